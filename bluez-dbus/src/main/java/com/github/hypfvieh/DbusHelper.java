@@ -1,16 +1,26 @@
 package com.github.hypfvieh;
 
+import org.bluez.exceptions.BluezFailedException;
+import org.freedesktop.dbus.FileDescriptor;
+import org.freedesktop.dbus.RemoteInvocationHandler;
+import org.freedesktop.dbus.RemoteObject;
 import org.freedesktop.dbus.connections.impl.DBusConnection;
 import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+import org.freedesktop.dbus.interfaces.CallbackHandler;
 import org.freedesktop.dbus.interfaces.DBusInterface;
 import org.freedesktop.dbus.interfaces.Introspectable;
+import org.freedesktop.dbus.utils.ReflectionFileDescriptorHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.*;
 
 import java.io.IOException;
-import java.util.LinkedHashSet;
-import java.util.Set;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Various DBUS related helper methods.
@@ -21,10 +31,49 @@ public final class DbusHelper {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DbusHelper.class);
 
+    /** Introspection results of each connection */
+    private static final Map<DBusConnection, NodeCache> NODE_CACHES = new WeakHashMap<>();
+
+    private static volatile boolean nodeCacheEnabled;
+
+    private static final String BLUEZ_ERROR_PREFIX = "org.bluez.Error.";
+
     private DbusHelper() {
 
     }
 
+    /**
+     * Enable/disable caching of {@link #findNodes(DBusConnection, String)} results.<br>
+     * Cached results are invalidated when bluez reports new or removed objects
+     * (ObjectManager InterfacesAdded/InterfacesRemoved signals) below or above the cached path.
+     * <br>
+     * The default is false (caching disabled)
+     *
+     * @param _enabled true to enable
+     */
+    public static void setNodeCacheEnabled(boolean _enabled) {
+        nodeCacheEnabled = _enabled;
+        if (!_enabled) {
+            synchronized (NODE_CACHES) {
+                NODE_CACHES.values().forEach(NodeCache::clear);
+            }
+        }
+    }
+
+    /**
+     * Release all caches and signal handlers created by this library for the given connection.<br>
+     * Should be called before the connection is closed.
+     *
+     * @param _connection the dbus connection
+     */
+    public static void releaseConnection(DBusConnection _connection) {
+        synchronized (NODE_CACHES) {
+            NODE_CACHES.remove(_connection);
+        }
+        RemoteObjectCache.release(_connection);
+        DbusSignalDispatcher.release(_connection);
+    }
+
     /**
      * Find all &lt;node&gt;-Elements in DBUS Introspection XML and extracts the value of the 'name' attribute.
      * @param _connection the dbus connection
@@ -36,22 +85,30 @@ public final class DbusHelper {
         if (_connection == null || _path == null || _path.trim().isEmpty()) {
             return foundNodes;
         }
+
+        NodeCache cache = getNodeCache(_connection);
+        long generation = 0;
+        if (cache != null) {
+            Set<String> cached = cache.get(_path);
+            if (cached != null) {
+                foundNodes.addAll(cached);
+                return foundNodes;
+            }
+            generation = cache.getGeneration();
+        }
+
         try {
-            Introspectable remoteObject = _connection.getRemoteObject("org.bluez", _path, Introspectable.class);
+            Introspectable remoteObject = getRemoteObjectOrThrow(_connection, _path, Introspectable.class);
             String introspect = remoteObject.Introspect();
-            Document doc = XmlHelper.parseXmlString(introspect);
-            NodeList nodes = XmlHelper.applyXpathExpressionToDocument("/node/node", doc);
-            for (int i = 0; i < nodes.getLength(); i++) {
-                if (nodes.item(i) instanceof Element) {
-                    Element elem = (Element) nodes.item(i);
-                    foundNodes.add(elem.getAttribute("name"));
-                }
+            foundNodes.addAll(XmlHelper.readChildNodeNames(introspect));
+            if (cache != null) {
+                cache.put(_path, foundNodes, generation);
             }
             return foundNodes;
         } catch (DBusException _ex) {
             LOGGER.info("Exception while search DBus.", _ex);
         } catch (IOException _ex) {
-            LOGGER.error("Exception while applying Xpath to introspection result", _ex);
+            LOGGER.error("Exception while reading introspection result", _ex);
         } catch (Exception _ex) {
             LOGGER.error("Critical error while reading DBUS response (maybe no bluetoothd daemon running?)", _ex);
         }
@@ -59,7 +116,10 @@ public final class DbusHelper {
     }
 
     /**
-     * Creates an java object from a bluez dbus response.
+     * Creates an java object from a bluez dbus response.<br>
+     * Proxies are cached per object path and interface, so calling this method
+     * multiple times for the same object will usually return the same proxy instance.
+     *
      * @param _connection Dbus connection to use
      * @param _path dbus request path
      * @param _objClass interface class to use
@@ -68,11 +128,191 @@ public final class DbusHelper {
      */
     public static <T extends DBusInterface> T getRemoteObject(DBusConnection _connection, String _path, Class<T> _objClass) {
         try {
-            return _connection.getRemoteObject("org.bluez", _path, _objClass);
+            return getRemoteObjectOrThrow(_connection, _path, _objClass);
         } catch (DBusException _ex) {
             LOGGER.warn("Error while converting dbus response to object.", _ex);
         }
         return null;
     }
 
+    /**
+     * Returns true if file descriptors received by DBus (e.g. by AcquireNotify/AcquireWrite)
+     * can be converted to {@link java.io.FileDescriptor}.
+     * @return true if supported
+     */
+    public static boolean isFileDescriptorSupported() {
+        return ReflectionFileDescriptorHelper.getInstance().isPresent();
+    }
+
+    /**
+     * Convert a file descriptor received by DBus to a {@link java.io.FileDescriptor}.
+     *
+     * @param _fileDescriptor DBus file descriptor
+     * @return java file descriptor or null if conversion is not supported
+     * @see #isFileDescriptorSupported()
+     */
+    public static java.io.FileDescriptor toJavaFileDescriptor(FileDescriptor _fileDescriptor) {
+        if (_fileDescriptor == null) {
+            return null;
+        }
+        return ReflectionFileDescriptorHelper.getInstance()
+                .flatMap(h -> h.createFileDescriptor(_fileDescriptor.getIntFileDescriptor()))
+                .orElse(null);
+    }
+
+    /**
+     * Call a method on a remote object without blocking the calling thread.<br>
+     * The returned future is completed by a DBus worker thread when the reply is received.
+     * DBus errors sent by bluez (org.bluez.Error.*) are converted to the matching exception
+     * of package org.bluez.exceptions (see {@link #toBluezException(DBusExecutionException)}).
+     *
+     * @param _connection connection used to create the remote object
+     * @param _remoteObject remote object (proxy created by {@link #getRemoteObject(DBusConnection, String, Class)})
+     * @param _methodName method to call
+     * @param _parameterTypes parameter types of the method as declared in the interface
+     * @param _args arguments
+     * @param <T> return type of the method, {@link Void} for void methods
+     * @return future, never null
+     */
+    public static <T> CompletableFuture<T> callAsync(DBusConnection _connection, DBusInterface _remoteObject, String _methodName, Class<?>[] _parameterTypes, Object... _args) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            if (_remoteObject == null || !Proxy.isProxyClass(_remoteObject.getClass())
+                    || !(Proxy.getInvocationHandler(_remoteObject) instanceof RemoteInvocationHandler handler)) {
+                throw new DBusException("Not a remote object: " + _remoteObject);
+            }
+            RemoteObject remote = handler.getRemote();
+            Method method = remote.getInterface().getMethod(_methodName, _parameterTypes);
+            CallbackHandler<T> callback = new CallbackHandler<>() {
+                @Override
+                public void handle(T _result) {
+                    future.complete(_result);
+                }
+
+                @Override
+                public void handleError(DBusExecutionException _ex) {
+                    future.completeExceptionally(toBluezException(_ex));
+                }
+            };
+            RemoteInvocationHandler.executeRemoteMethod(remote, method, _connection, RemoteInvocationHandler.CALL_TYPE_CALLBACK, callback, _args);
+        } catch (DBusException | DBusExecutionException | NoSuchMethodException _ex) {
+            future.completeExceptionally(_ex);
+        }
+        return future;
+    }
+
+    /**
+     * Convert a DBus error received from bluez to the matching exception of package org.bluez.exceptions
+     * (e.g. org.bluez.Error.InProgress to {@link org.bluez.exceptions.BluezInProgressException}).<br>
+     * dbus-java creates the exceptions of package org.bluez.Error for errors sent by bluez.
+     *
+     * @param _ex exception to convert
+     * @return converted exception or the given exception if there is no matching bluez exception
+     */
+    public static Exception toBluezException(DBusExecutionException _ex) {
+        String type = _ex.getClass().getName();
+        if (!type.startsWith(BLUEZ_ERROR_PREFIX)) {
+            return _ex;
+        }
+        String className = BluezFailedException.class.getPackageName() + ".Bluez" + type.substring(BLUEZ_ERROR_PREFIX.length()) + "Exception";
+        try {
+            Class<?> clz = Class.forName(className, true, BluezFailedException.class.getClassLoader());
+            if (DBusException.class.isAssignableFrom(clz)) {
+                DBusException converted = (DBusException) clz.getConstructor(String.class).newInstance(_ex.getMessage());
+                converted.initCause(_ex);
+                return converted;
+            }
+        } catch (ReflectiveOperationException | IllegalStateException _ignored) {
+            LOGGER.trace("No exception class for bluez error {}", type);
+        }
+        return _ex;
+    }
+
+    private static <T extends DBusInterface> T getRemoteObjectOrThrow(DBusConnection _connection, String _path, Class<T> _objClass) throws DBusException {
+        RemoteObjectCache cache = RemoteObjectCache.getInstance(_connection);
+        if (cache != null) {
+            T proxy = cache.get(_path, _objClass);
+            if (proxy != null) {
+                return proxy;
+            }
+        }
+        T proxy = _connection.getRemoteObject("org.bluez", _path, _objClass);
+        if (cache != null) {
+            cache.put(_path, _objClass, proxy);
+        }
+        return proxy;
+    }
+
+    private static NodeCache getNodeCache(DBusConnection _connection) {
+        if (!nodeCacheEnabled) {
+            return null;
+        }
+        synchronized (NODE_CACHES) {
+            NodeCache cache = NODE_CACHES.get(_connection);
+            if (cache == null) {
+                cache = new NodeCache();
+                try {
+                    DbusSignalDispatcher dispatcher = DbusSignalDispatcher.getInstance(_connection);
+                    NodeCache newCache = cache;
+                    dispatcher.addInterfacesAddedHandler(s -> newCache.invalidate(s.getObjectPath()));
+                    dispatcher.addInterfacesRemovedHandler(s -> newCache.invalidate(s.getObjectPath()));
+                } catch (DBusException _ex) {
+                    LOGGER.debug("Unable to register signal handlers, introspection results will not be cached", _ex);
+                    return null;
+                }
+                NODE_CACHES.put(_connection, cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * Cached child node names by object path.
+     */
+    private static final class NodeCache {
+        private final ConcurrentSkipListMap<String, Set<String>> nodesByPath = new ConcurrentSkipListMap<>();
+        /** Incremented on every invalidation, used to detect changes while a query was running */
+        private final AtomicLong generation = new AtomicLong();
+
+        Set<String> get(String _path) {
+            return nodesByPath.get(_path);
+        }
+
+        long getGeneration() {
+            return generation.get();
+        }
+
+        void put(String _path, Set<String> _nodes, long _generation) {
+            nodesByPath.put(_path, Collections.unmodifiableSet(new LinkedHashSet<>(_nodes)));
+            if (generation.get() != _generation) {
+                // objects changed while querying, result may already be outdated
+                nodesByPath.remove(_path);
+            }
+        }
+
+        /**
+         * Invalidate the given path, all its parents and all its children.
+         * @param _objectPath path of added or removed object
+         */
+        void invalidate(String _objectPath) {
+            generation.incrementAndGet();
+            nodesByPath.remove(_objectPath);
+            // '0' is the character following '/', so this will select all children
+            nodesByPath.subMap(_objectPath + "/", _objectPath + "0").clear();
+
+            String path = _objectPath;
+            int idx;
+            while ((idx = path.lastIndexOf('/')) > 0) {
+                path = path.substring(0, idx);
+                nodesByPath.remove(path);
+            }
+            nodesByPath.remove("/");
+        }
+
+        void clear() {
+            generation.incrementAndGet();
+            nodesByPath.clear();
+        }
+    }
+
 }
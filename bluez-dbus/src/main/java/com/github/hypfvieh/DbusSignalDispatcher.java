@@ -0,0 +1,249 @@
+package com.github.hypfvieh;
+
+import org.freedesktop.dbus.connections.impl.DBusConnection;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.handlers.AbstractInterfacesAddedHandler;
+import org.freedesktop.dbus.handlers.AbstractInterfacesRemovedHandler;
+import org.freedesktop.dbus.handlers.AbstractPropertiesChangedHandler;
+import org.freedesktop.dbus.handlers.AbstractSignalHandlerBase;
+import org.freedesktop.dbus.interfaces.DBusSigHandler;
+import org.freedesktop.dbus.interfaces.ObjectManager.InterfacesAdded;
+import org.freedesktop.dbus.interfaces.ObjectManager.InterfacesRemoved;
+import org.freedesktop.dbus.interfaces.Properties.PropertiesChanged;
+import org.freedesktop.dbus.messages.DBusSignal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Dispatches DBus signals received on a connection to listeners registered for a specific object path.<br>
+ * <br>
+ * Only one signal handler per signal type is registered on the connection, no matter how many listeners are added.
+ * Incoming signals are routed using a hash lookup on the object path, so the cost per signal does not grow with the
+ * number of registered listeners.
+ *
+ * @author hypfvieh
+ */
+public final class DbusSignalDispatcher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DbusSignalDispatcher.class);
+
+    private static final Map<DBusConnection, DbusSignalDispatcher> INSTANCES = new WeakHashMap<>();
+
+    /** Weakly referenced, otherwise the entry in {@link #INSTANCES} would keep the connection alive forever */
+    private final WeakReference<DBusConnection> connection;
+
+    /** DBus object path <-> listeners for PropertiesChanged signals of this path */
+    private final Map<String, List<DBusSigHandler<PropertiesChanged>>> propertiesChangedByPath = new ConcurrentHashMap<>();
+
+    private final List<DBusSigHandler<InterfacesAdded>> interfacesAddedHandlers = new CopyOnWriteArrayList<>();
+    private final List<DBusSigHandler<InterfacesRemoved>> interfacesRemovedHandlers = new CopyOnWriteArrayList<>();
+
+    private volatile PropertiesChangedRouter propertiesChangedRouter;
+    private volatile InterfacesAddedRouter interfacesAddedRouter;
+    private volatile InterfacesRemovedRouter interfacesRemovedRouter;
+
+    private DbusSignalDispatcher(DBusConnection _connection) {
+        connection = new WeakReference<>(_connection);
+    }
+
+    /**
+     * Get the dispatcher for the given connection.
+     * Will create a new dispatcher if none was created for this connection before.
+     *
+     * @param _connection connection
+     * @return dispatcher, never null
+     */
+    public static DbusSignalDispatcher getInstance(DBusConnection _connection) {
+        synchronized (INSTANCES) {
+            return INSTANCES.computeIfAbsent(_connection, DbusSignalDispatcher::new);
+        }
+    }
+
+    /**
+     * Release the dispatcher of the given connection.<br>
+     * Removes all signal handlers installed on the connection and drops all registered listeners.
+     * Should be called before the connection is closed.
+     *
+     * @param _connection connection
+     */
+    public static void release(DBusConnection _connection) {
+        DbusSignalDispatcher dispatcher;
+        synchronized (INSTANCES) {
+            dispatcher = INSTANCES.remove(_connection);
+        }
+        if (dispatcher != null) {
+            dispatcher.unregister(_connection);
+        }
+    }
+
+    /**
+     * Add a listener which will receive all PropertiesChanged signals emitted for the given object path.
+     *
+     * @param _path DBus object path
+     * @param _handler handler to call
+     * @throws DBusException when signal handler could not be registered on the connection
+     */
+    public void addPropertiesChangedHandler(String _path, DBusSigHandler<PropertiesChanged> _handler) throws DBusException {
+        if (propertiesChangedRouter == null) {
+            synchronized (this) {
+                if (propertiesChangedRouter == null) {
+                    propertiesChangedRouter = register(new PropertiesChangedRouter());
+                }
+            }
+        }
+        // add inside compute, so it cannot interleave with the removal of an empty list
+        propertiesChangedByPath.compute(_path, (p, handlers) -> {
+            List<DBusSigHandler<PropertiesChanged>> result = handlers == null ? new CopyOnWriteArrayList<>() : handlers;
+            result.add(_handler);
+            return result;
+        });
+    }
+
+    /**
+     * Remove a listener previously added by {@link #addPropertiesChangedHandler(String, DBusSigHandler)}.
+     *
+     * @param _path DBus object path
+     * @param _handler handler to remove
+     */
+    public void removePropertiesChangedHandler(String _path, DBusSigHandler<PropertiesChanged> _handler) {
+        propertiesChangedByPath.computeIfPresent(_path, (p, handlers) -> {
+            handlers.remove(_handler);
+            return handlers.isEmpty() ? null : handlers;
+        });
+    }
+
+    /**
+     * Add a listener which will receive all ObjectManager InterfacesAdded signals.
+     *
+     * @param _handler handler to call
+     * @throws DBusException when signal handler could not be registered on the connection
+     */
+    public void addInterfacesAddedHandler(DBusSigHandler<InterfacesAdded> _handler) throws DBusException {
+        if (interfacesAddedRouter == null) {
+            synchronized (this) {
+                if (interfacesAddedRouter == null) {
+                    interfacesAddedRouter = register(new InterfacesAddedRouter());
+                }
+            }
+        }
+        interfacesAddedHandlers.add(_handler);
+    }
+
+    /**
+     * Remove a listener previously added by {@link #addInterfacesAddedHandler(DBusSigHandler)}.
+     *
+     * @param _handler handler to remove
+     */
+    public void removeInterfacesAddedHandler(DBusSigHandler<InterfacesAdded> _handler) {
+        interfacesAddedHandlers.remove(_handler);
+    }
+
+    /**
+     * Add a listener which will receive all ObjectManager InterfacesRemoved signals.
+     *
+     * @param _handler handler to call
+     * @throws DBusException when signal handler could not be registered on the connection
+     */
+    public void addInterfacesRemovedHandler(DBusSigHandler<InterfacesRemoved> _handler) throws DBusException {
+        if (interfacesRemovedRouter == null) {
+            synchronized (this) {
+                if (interfacesRemovedRouter == null) {
+                    interfacesRemovedRouter = register(new InterfacesRemovedRouter());
+                }
+            }
+        }
+        interfacesRemovedHandlers.add(_handler);
+    }
+
+    /**
+     * Remove a listener previously added by {@link #addInterfacesRemovedHandler(DBusSigHandler)}.
+     *
+     * @param _handler handler to remove
+     */
+    public void removeInterfacesRemovedHandler(DBusSigHandler<InterfacesRemoved> _handler) {
+        interfacesRemovedHandlers.remove(_handler);
+    }
+
+    private <T extends DBusSignal, H extends AbstractSignalHandlerBase<T>> H register(H _router) throws DBusException {
+        DBusConnection conn = connection.get();
+        if (conn == null) {
+            throw new DBusException("Connection of signal dispatcher is no longer available");
+        }
+        conn.addSigHandler(_router.getImplementationClass(), _router);
+        return _router;
+    }
+
+    private synchronized void unregister(DBusConnection _connection) {
+        removeRouter(_connection, propertiesChangedRouter);
+        removeRouter(_connection, interfacesAddedRouter);
+        removeRouter(_connection, interfacesRemovedRouter);
+        propertiesChangedRouter = null;
+        interfacesAddedRouter = null;
+        interfacesRemovedRouter = null;
+
+        propertiesChangedByPath.clear();
+        interfacesAddedHandlers.clear();
+        interfacesRemovedHandlers.clear();
+    }
+
+    private static <T extends DBusSignal> void removeRouter(DBusConnection _connection, AbstractSignalHandlerBase<T> _router) {
+        if (_router == null) {
+            return;
+        }
+        try {
+            _connection.removeSigHandler(_router.getImplementationClass(), _router);
+        } catch (DBusException _ex) {
+            LOGGER.debug("Unable to remove {} signal handler", _router.getImplementationClass().getSimpleName(), _ex);
+        }
+    }
+
+    private static <T extends DBusSignal> void dispatch(List<DBusSigHandler<T>> _handlers, T _signal) {
+        for (DBusSigHandler<T> handler : _handlers) {
+            try {
+                handler.handle(_signal);
+            } catch (Exception _ex) {
+                LOGGER.warn("Error while dispatching {} signal for {}", _signal.getName(), _signal.getPath(), _ex);
+            }
+        }
+    }
+
+    /**
+     * Single PropertiesChanged handler registered on the connection which forwards signals by object path.
+     */
+    private final class PropertiesChangedRouter extends AbstractPropertiesChangedHandler {
+        @Override
+        public void handle(PropertiesChanged _signal) {
+            List<DBusSigHandler<PropertiesChanged>> handlers = propertiesChangedByPath.get(_signal.getPath());
+            if (handlers != null) {
+                dispatch(handlers, _signal);
+            }
+        }
+    }
+
+    /**
+     * Single InterfacesAdded handler registered on the connection.
+     */
+    private final class InterfacesAddedRouter extends AbstractInterfacesAddedHandler {
+        @Override
+        public void handle(InterfacesAdded _signal) {
+            dispatch(interfacesAddedHandlers, _signal);
+        }
+    }
+
+    /**
+     * Single InterfacesRemoved handler registered on the connection.
+     */
+    private final class InterfacesRemovedRouter extends AbstractInterfacesRemovedHandler {
+        @Override
+        public void handle(InterfacesRemoved _signal) {
+            dispatch(interfacesRemovedHandlers, _signal);
+        }
+    }
+}
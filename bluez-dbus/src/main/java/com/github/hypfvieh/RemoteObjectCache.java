@@ -0,0 +1,148 @@
+package com.github.hypfvieh;
+
+import org.freedesktop.dbus.connections.impl.DBusConnection;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.interfaces.DBusInterface;
+import org.freedesktop.dbus.utils.DBusNamingUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.WeakReference;
+import java.util.*;
+
+/**
+ * Bounded cache of remote object proxies created for a single connection.<br>
+ * <br>
+ * Proxies are keyed by object path and DBus interface name and only weakly referenced.
+ * If the cache exceeds {@link #MAX_ENTRIES}, the least recently used entry is dropped.
+ * The proxy of an interface is evicted when bluez removes that interface from the object (InterfacesRemoved signal).
+ * bluez sends a separate signal for every removed object, so children are evicted by their own signals.
+ *
+ * @author hypfvieh
+ */
+final class RemoteObjectCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RemoteObjectCache.class);
+
+    /** Maximum number of proxies kept per connection */
+    static final int MAX_ENTRIES = 1024;
+
+    private static final Map<DBusConnection, RemoteObjectCache> INSTANCES = new WeakHashMap<>();
+
+    private final Map<ProxyKey, WeakReference<DBusInterface>> proxies = new LinkedHashMap<>(64, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ProxyKey, WeakReference<DBusInterface>> _eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private RemoteObjectCache() {
+    }
+
+    /**
+     * Get the cache of the given connection.
+     *
+     * @param _connection connection
+     * @return cache or null if the cache could not be registered for removal signals
+     */
+    static RemoteObjectCache getInstance(DBusConnection _connection) {
+        synchronized (INSTANCES) {
+            RemoteObjectCache cache = INSTANCES.get(_connection);
+            if (cache == null) {
+                cache = new RemoteObjectCache();
+                try {
+                    RemoteObjectCache newCache = cache;
+                    DbusSignalDispatcher.getInstance(_connection).addInterfacesRemovedHandler(s -> newCache.evict(s.getObjectPath(), s.getInterfaces()));
+                } catch (DBusException _ex) {
+                    LOGGER.debug("Unable to register signal handler, remote objects will not be cached", _ex);
+                    return null;
+                }
+                INSTANCES.put(_connection, cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * Drop the cache of the given connection.
+     *
+     * @param _connection connection
+     */
+    static void release(DBusConnection _connection) {
+        synchronized (INSTANCES) {
+            INSTANCES.remove(_connection);
+        }
+    }
+
+    /**
+     * Get a cached proxy.
+     *
+     * @param _path object path
+     * @param _type interface class
+     * @param <T> interface type
+     * @return proxy or null if not cached
+     */
+    synchronized <T extends DBusInterface> T get(String _path, Class<T> _type) {
+        ProxyKey key = new ProxyKey(_path, DBusNamingUtil.getInterfaceName(_type));
+        WeakReference<DBusInterface> ref = proxies.get(key);
+        if (ref == null) {
+            return null;
+        }
+        DBusInterface proxy = ref.get();
+        if (proxy == null) {
+            proxies.remove(key);
+            return null;
+        }
+        // another class may map to the same DBus interface, the proxy is replaced by put in that case
+        return _type.isInstance(proxy) ? _type.cast(proxy) : null;
+    }
+
+    synchronized void put(String _path, Class<? extends DBusInterface> _type, DBusInterface _proxy) {
+        proxies.put(new ProxyKey(_path, DBusNamingUtil.getInterfaceName(_type)), new WeakReference<>(_proxy));
+    }
+
+    /**
+     * Remove the proxies of the given interfaces of an object path.
+     * Proxies of other interfaces of the same object are kept.
+     *
+     * @param _path object path
+     * @param _interfaces names of the removed interfaces
+     */
+    synchronized void evict(String _path, List<String> _interfaces) {
+        if (_interfaces == null) {
+            return;
+        }
+        for (String iface : _interfaces) {
+            proxies.remove(new ProxyKey(_path, iface));
+        }
+    }
+
+    private static final class ProxyKey {
+        private final String path;
+        private final String iface;
+
+        ProxyKey(String _path, String _iface) {
+            path = _path;
+            iface = _iface;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, iface);
+        }
+
+        @Override
+        public boolean equals(Object _obj) {
+            if (this == _obj) {
+                return true;
+            }
+            if (!(_obj instanceof ProxyKey)) {
+                return false;
+            }
+            ProxyKey other = (ProxyKey) _obj;
+            return path.equals(other.path) && iface.equals(other.iface);
+        }
+    }
+}
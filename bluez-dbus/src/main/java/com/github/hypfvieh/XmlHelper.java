@@ -4,9 +4,16 @@ import org.w3c.dom.*;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.StringReader;
 import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.xpath.*;
 
 /**
@@ -17,10 +24,72 @@ import javax.xml.xpath.*;
  */
 public final class XmlHelper {
 
+    /** Shared factory, creating readers is thread safe once the factory is configured. */
+    private static final XMLInputFactory XML_INPUT_FACTORY = createXmlInputFactory();
+
     private XmlHelper() {
 
     }
 
+    private static XMLInputFactory createXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        // DBus introspection data references a DTD, never load it
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+        factory.setProperty(XMLInputFactory.IS_VALIDATING, false);
+        return factory;
+    }
+
+    /**
+     * Read the 'name' attribute of all &lt;node&gt;-Elements which are direct children of the root &lt;node&gt;-Element
+     * of a DBus introspection XML (same result as XPath '/node/node/@name').<br>
+     * The XML is processed as stream, no DOM is created.
+     *
+     * @param _xmlStr introspection xml string
+     * @return Set of names, maybe empty, never null
+     * @throws IOException on error
+     */
+    public static Set<String> readChildNodeNames(String _xmlStr) throws IOException {
+        Set<String> names = new LinkedHashSet<>();
+        XMLStreamReader reader = null;
+        try {
+            reader = XML_INPUT_FACTORY.createXMLStreamReader(new StringReader(_xmlStr));
+            int depth = 0;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                    if (depth == 1 && !"node".equals(reader.getLocalName())) {
+                        return names;
+                    } else if (depth == 2 && "node".equals(reader.getLocalName())) {
+                        String name = reader.getAttributeValue(null, "name");
+                        if (name != null) {
+                            names.add(name);
+                        }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                }
+            }
+            return names;
+        } catch (XMLStreamException _ex) {
+            String logStr = _xmlStr;
+            if (_xmlStr.length() > 250) {
+                logStr = logStr.substring(0, 247) + "...";
+            }
+            throw new IOException("Failed to parse " + logStr, _ex);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException _ex) {
+                    // ignore, nothing to release for string input
+                }
+            }
+        }
+    }
+
     /**
      * Create a new {@link Document} instance from the given string, disabling validation.
      * @param _xmlStr xml string
@@ -0,0 +1,21 @@
+package com.github.hypfvieh.bluetooth;
+
+import com.github.hypfvieh.bluetooth.wrapper.BluetoothDevice;
+
+/**
+ * Listener which receives bluetooth devices as soon as they are seen during discovery.
+ *
+ * @author hypfvieh
+ */
+@FunctionalInterface
+public interface DeviceDiscoveryListener {
+
+    /**
+     * Called for every device found during discovery.
+     * Each device is reported only once per discovery run.
+     *
+     * @param _device device found
+     * @return true to continue discovery, false to stop discovery
+     */
+    boolean onDeviceFound(BluetoothDevice _device);
+}
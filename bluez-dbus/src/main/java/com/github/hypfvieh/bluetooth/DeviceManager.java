@@ -1,17 +1,29 @@
 package com.github.hypfvieh.bluetooth;
 
 import com.github.hypfvieh.DbusHelper;
+import com.github.hypfvieh.DbusSignalDispatcher;
+import com.github.hypfvieh.bluetooth.wrapper.AbstractBluetoothObject;
 import com.github.hypfvieh.bluetooth.wrapper.BluetoothAdapter;
+import com.github.hypfvieh.bluetooth.wrapper.BluetoothAddress;
 import com.github.hypfvieh.bluetooth.wrapper.BluetoothDevice;
+import com.github.hypfvieh.bluetooth.wrapper.DiscoveryFilterOptions;
+import com.github.hypfvieh.bluetooth.wrapper.ManagedObjectListener;
+import com.github.hypfvieh.bluetooth.wrapper.ManagedObjectTree;
 import org.bluez.Adapter1;
 import org.bluez.Device1;
 import org.bluez.exceptions.*;
+import org.freedesktop.dbus.DBusPath;
 import org.freedesktop.dbus.connections.impl.DBusConnection;
 import org.freedesktop.dbus.connections.impl.DBusConnection.DBusBusType;
 import org.freedesktop.dbus.connections.impl.DBusConnectionBuilder;
 import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
 import org.freedesktop.dbus.handlers.AbstractPropertiesChangedHandler;
 import org.freedesktop.dbus.handlers.AbstractSignalHandlerBase;
+import org.freedesktop.dbus.interfaces.DBusSigHandler;
+import org.freedesktop.dbus.interfaces.ObjectManager;
+import org.freedesktop.dbus.interfaces.ObjectManager.InterfacesAdded;
+import org.freedesktop.dbus.interfaces.Properties.PropertiesChanged;
 import org.freedesktop.dbus.messages.DBusSignal;
 import org.freedesktop.dbus.types.Variant;
 import org.slf4j.Logger;
@@ -19,6 +31,14 @@ import org.slf4j.LoggerFactory;
 
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * The 'main' class to get access to all DBus/bluez related objects.
@@ -32,16 +52,32 @@ public class DeviceManager {
     private DBusConnection dbusConnection;
 
     /** MacAddress of BT-adapter <-> adapter object */
-    private final Map<String, BluetoothAdapter> bluetoothAdaptersByMac = new LinkedHashMap<>();
-    /** BT-adapter name <-> adapter object */
-    private final Map<String, BluetoothAdapter> bluetoothAdaptersByAdapterName = new LinkedHashMap<>();
+    private final Map<String, BluetoothAdapter> bluetoothAdaptersByMac = new ConcurrentSkipListMap<>();
+    /** BT-adapter name <-> adapter object, sorted by name (hci0, hci1...) */
+    private final Map<String, BluetoothAdapter> bluetoothAdaptersByAdapterName = new ConcurrentSkipListMap<>();
 
     /** MacAddress of BT-adapter <-> List of connected bluetooth device objects */
-    private final Map<String, List<BluetoothDevice>> bluetoothDeviceByAdapterMac = new LinkedHashMap<>();
+    private final Map<String, List<BluetoothDevice>> bluetoothDeviceByAdapterMac = new ConcurrentHashMap<>();
 
-    private String defaultAdapterMac;
+    /** DBus object path <-> bluetooth device object */
+    private final Map<String, BluetoothDevice> bluetoothDeviceByPath = new ConcurrentHashMap<>();
+    /** MacAddress of bluetooth device <-> bluetooth device object */
+    private final Map<BluetoothAddress, BluetoothDevice> bluetoothDeviceByAddress = new ConcurrentHashMap<>();
 
-    private boolean lazyScan;
+    private volatile String defaultAdapterMac;
+
+    private volatile boolean lazyScan;
+
+    /** Max age for property cache of new adapter/device objects, negative if caching is disabled */
+    private volatile long propertyCacheMaxAge = -1;
+
+    /** Lock used to serialize adapter scans */
+    private final Object adapterScanLock = new Object();
+    /** Adapter DBus path <-> lock used to serialize device scans of this adapter */
+    private final Map<String, Object> deviceScanLocks = new ConcurrentHashMap<>();
+
+    /** Tree updated by InterfacesAdded/InterfacesRemoved signals, null if live registry is disabled */
+    private volatile ManagedObjectTree liveRegistry;
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
@@ -72,6 +108,8 @@ public class DeviceManager {
      * Close current connection.
      */
     public void closeConnection() {
+        disableLiveRegistry();
+        DbusHelper.releaseConnection(dbusConnection);
         dbusConnection.disconnect();
     }
 
@@ -110,26 +148,56 @@ public class DeviceManager {
      * @return List of adapters, maybe empty, never null
      */
     public List<BluetoothAdapter> scanForBluetoothAdapters() {
-        bluetoothAdaptersByAdapterName.clear();
-        bluetoothAdaptersByMac.clear();
-
-        Set<String> scanObjectManager = DbusHelper.findNodes(dbusConnection, "/org/bluez");
-        for (String hci : scanObjectManager) {
-            Adapter1 adapter = DbusHelper.getRemoteObject(dbusConnection, "/org/bluez/" + hci, Adapter1.class);
-            if (adapter != null) {
-                BluetoothAdapter bt2 = new BluetoothAdapter(adapter, "/org/bluez/" + hci, dbusConnection);
-                bluetoothAdaptersByMac.put(bt2.getAddress(), bt2);
-                bluetoothAdaptersByAdapterName.put(hci, bt2);
-            }
+        if (liveRegistry != null) {
+            // adapter list is maintained by the registry
+            return new ArrayList<>(bluetoothAdaptersByAdapterName.values());
         }
 
-        ArrayList<BluetoothAdapter> adapterList = new ArrayList<>(bluetoothAdaptersByAdapterName.values());
+        synchronized (adapterScanLock) {
+            Map<String, BluetoothAdapter> foundByMac = new LinkedHashMap<>();
+            Map<String, BluetoothAdapter> foundByName = new LinkedHashMap<>();
+
+            Set<String> scanObjectManager = DbusHelper.findNodes(dbusConnection, "/org/bluez");
+            for (String hci : scanObjectManager) {
+                // keep known adapter objects, so their property caches (and signal handlers) are not duplicated
+                BluetoothAdapter bt2 = bluetoothAdaptersByAdapterName.get(hci);
+                if (bt2 == null) {
+                    Adapter1 adapter = DbusHelper.getRemoteObject(dbusConnection, "/org/bluez/" + hci, Adapter1.class);
+                    if (adapter != null) {
+                        bt2 = new BluetoothAdapter(adapter, "/org/bluez/" + hci, dbusConnection);
+                        if (propertyCacheMaxAge >= 0) {
+                            bt2.enablePropertyCache(propertyCacheMaxAge);
+                        }
+                    }
+                }
+                if (bt2 != null) {
+                    String address = bt2.getAddress();
+                    if (address != null) {
+                        foundByMac.put(address, bt2);
+                    }
+                    foundByName.put(hci, bt2);
+                }
+            }
+
+            // replace entries instead of clearing the maps, so concurrent readers never see an empty adapter list
+            bluetoothAdaptersByMac.putAll(foundByMac);
+            bluetoothAdaptersByMac.keySet().retainAll(foundByMac.keySet());
+            for (Entry<String, BluetoothAdapter> previous : bluetoothAdaptersByAdapterName.entrySet()) {
+                if (foundByName.get(previous.getKey()) != previous.getValue()) {
+                    previous.getValue().disablePropertyCache();
+                }
+            }
+            bluetoothAdaptersByAdapterName.putAll(foundByName);
+            bluetoothAdaptersByAdapterName.keySet().retainAll(foundByName.keySet());
 
-        if (defaultAdapterMac == null && !bluetoothAdaptersByMac.isEmpty()) {
-            defaultAdapterMac = new ArrayList<>(bluetoothAdaptersByMac.keySet()).get(0);
-        }
+            ArrayList<BluetoothAdapter> adapterList = new ArrayList<>(bluetoothAdaptersByAdapterName.values());
+
+            if (defaultAdapterMac == null && !foundByMac.isEmpty()) {
+                defaultAdapterMac = getAdapterMac(adapterList.get(0));
+            }
 
-        return adapterList;
+            return adapterList;
+        }
     }
 
     /**
@@ -165,39 +233,219 @@ public class DeviceManager {
             findBtDevicesByIntrospection(adapter);
         }
 
-        List<BluetoothDevice> devicelist = bluetoothDeviceByAdapterMac.get(adapter.getAddress());
+        String adapterMac = adapter.getAddress();
+        List<BluetoothDevice> devicelist = adapterMac != null ? bluetoothDeviceByAdapterMac.get(adapterMac) : null;
         if (devicelist != null) {
             return new ArrayList<>(devicelist);
         }
         return new ArrayList<>();
     }
 
+    /**
+     * Scan for bluetooth devices on the given adapter and report every device to the given listener
+     * as soon as bluez announces it.<br>
+     * New devices are reported when bluez publishes them (InterfacesAdded signal), devices already known by bluez
+     * are reported when advertising data (RSSI, manufacturer or service data) for them is received.
+     * <br>
+     * This method blocks until the timeout is reached or the listener requests to stop the discovery.
+     * If adapter is null or could not be found, the default adapter is used.
+     *
+     * @param _adapter adapter to use (either MAC or Dbus-Devicename (e.g. hci0))
+     * @param _timeoutMs maximum time in milliseconds to scan for devices
+     * @param _listener listener to receive found devices
+     * @return true if discovery was stopped by the listener, false on timeout or if discovery could not be started
+     */
+    public boolean scanForBluetoothDevices(String _adapter, int _timeoutMs, DeviceDiscoveryListener _listener) {
+        Objects.requireNonNull(_listener, "Listener required");
+        BluetoothAdapter adapter = getAdapter(_adapter);
+        if (adapter == null) {
+            return false;
+        }
+
+        // object paths of devices already cached by bluez, their wrappers are only created when they are reported
+        String adapterMac = getAdapterMac(adapter);
+        Set<String> knownDevicePaths = findDevicePaths(adapter);
+
+        CountDownLatch stopSignal = new CountDownLatch(1);
+        Set<String> reported = ConcurrentHashMap.newKeySet();
+        Consumer<BluetoothDevice> reporter = device -> {
+            synchronized (stopSignal) {
+                if (stopSignal.getCount() > 0 && reported.add(device.getDbusPath()) && !_listener.onDeviceFound(device)) {
+                    stopSignal.countDown();
+                }
+            }
+        };
+
+        DBusSigHandler<InterfacesAdded> addedHandler = signal -> {
+            String path = signal.getObjectPath();
+            if (!signal.getInterfaces().containsKey(Device1.class.getName())
+                    || !adapter.getDbusPath().equals(path.substring(0, path.lastIndexOf('/')))) {
+                return;
+            }
+            BluetoothDevice device = getDeviceForDiscovery(adapter, adapterMac, path);
+            if (device != null) {
+                reporter.accept(device);
+            }
+        };
+
+        Map<String, DBusSigHandler<PropertiesChanged>> advertisingHandlers = new HashMap<>();
+        for (String devicePath : knownDevicePaths) {
+            advertisingHandlers.put(devicePath, signal -> {
+                Map<String, Variant<?>> changed = signal.getPropertiesChanged();
+                if (changed.containsKey("RSSI") || changed.containsKey("ManufacturerData") || changed.containsKey("ServiceData")) {
+                    BluetoothDevice device = getDeviceForDiscovery(adapter, adapterMac, devicePath);
+                    if (device != null) {
+                        reporter.accept(device);
+                    }
+                }
+            });
+        }
+
+        DbusSignalDispatcher dispatcher = DbusSignalDispatcher.getInstance(dbusConnection);
+        try {
+            dispatcher.addInterfacesAddedHandler(addedHandler);
+            for (Entry<String, DBusSigHandler<PropertiesChanged>> entry : advertisingHandlers.entrySet()) {
+                dispatcher.addPropertiesChangedHandler(entry.getKey(), entry.getValue());
+            }
+
+            if (adapter.startDiscovery()) {
+                return stopSignal.await(_timeoutMs, TimeUnit.MILLISECONDS);
+            }
+        } catch (DBusException _ex) {
+            logger.error("Unable to register signal handlers for discovery", _ex);
+        } catch (InterruptedException _ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            dispatcher.removeInterfacesAddedHandler(addedHandler);
+            advertisingHandlers.forEach(dispatcher::removePropertiesChangedHandler);
+            adapter.stopDiscovery();
+        }
+        return false;
+    }
+
+    /**
+     * Scan for a bluetooth device matching the given filter.<br>
+     * Discovery is stopped as soon as the first matching device was found.
+     * If adapter is null or could not be found, the default adapter is used.
+     *
+     * @param _adapter adapter to use (either MAC or Dbus-Devicename (e.g. hci0))
+     * @param _timeoutMs maximum time in milliseconds to scan for the device
+     * @param _filter filter which has to return true for the requested device
+     * @return first matching {@link BluetoothDevice}, null if no device matched within the timeout
+     */
+    public BluetoothDevice findBluetoothDevice(String _adapter, int _timeoutMs, Predicate<BluetoothDevice> _filter) {
+        Objects.requireNonNull(_filter, "Filter required");
+        AtomicReference<BluetoothDevice> result = new AtomicReference<>();
+        scanForBluetoothDevices(_adapter, _timeoutMs, device -> {
+            if (_filter.test(device)) {
+                result.set(device);
+                return false;
+            }
+            return true;
+        });
+        return result.get();
+    }
+
+    /**
+     * Object paths of all devices of the given adapter currently published by bluez.<br>
+     * Uses the live registry if enabled, a single ObjectManager.GetManagedObjects call otherwise.
+     */
+    private Set<String> findDevicePaths(BluetoothAdapter _adapter) {
+        Set<String> paths = new LinkedHashSet<>();
+        ManagedObjectTree registry = liveRegistry;
+        if (registry != null) {
+            registry.getDevices(_adapter).forEach(d -> paths.add(d.getDbusPath()));
+            return paths;
+        }
+
+        String prefix = _adapter.getDbusPath() + "/";
+        try {
+            ObjectManager objectManager = dbusConnection.getRemoteObject("org.bluez", "/", ObjectManager.class);
+            for (Entry<DBusPath, Map<String, Map<String, Variant<?>>>> entry : objectManager.GetManagedObjects().entrySet()) {
+                String path = entry.getKey().getPath();
+                if (path.startsWith(prefix) && path.indexOf('/', prefix.length()) < 0
+                        && entry.getValue().containsKey(Device1.class.getName())) {
+                    paths.add(path);
+                }
+            }
+        } catch (DBusException | DBusExecutionException _ex) {
+            logger.debug("Unable to query devices known by bluez, only new devices will be reported", _ex);
+        }
+        return paths;
+    }
+
+    /**
+     * Get the device object for a device announced during discovery.
+     * Will create a new object and add it to the device list of the adapter if the live registry is not used
+     * and the device is not known yet.
+     */
+    private BluetoothDevice getDeviceForDiscovery(BluetoothAdapter _adapter, String _adapterMac, String _devicePath) {
+        ManagedObjectTree registry = liveRegistry;
+        if (registry != null) {
+            // registry has already processed the signal
+            AbstractBluetoothObject obj = registry.getObject(_devicePath);
+            return obj instanceof BluetoothDevice ? (BluetoothDevice) obj : null;
+        }
+
+        synchronized (deviceScanLocks.computeIfAbsent(_adapter.getDbusPath(), k -> new Object())) {
+            BluetoothDevice known = bluetoothDeviceByPath.get(_devicePath);
+            if (known != null) {
+                return known;
+            }
+
+            Device1 rawDevice = DbusHelper.getRemoteObject(dbusConnection, _devicePath, Device1.class);
+            if (rawDevice == null) {
+                return null;
+            }
+            BluetoothDevice device = new BluetoothDevice(rawDevice, _adapter, _devicePath, dbusConnection);
+            if (propertyCacheMaxAge >= 0) {
+                device.enablePropertyCache(propertyCacheMaxAge);
+            }
+            if (_adapterMac != null) {
+                // a device removed and published again must not be listed twice
+                addOrReplaceDevice(bluetoothDeviceByAdapterMac.computeIfAbsent(_adapterMac, k -> new CopyOnWriteArrayList<>()), device);
+                indexDevice(device);
+            }
+            return device;
+        }
+    }
+
     /**
      * Gets all devices found by the given adapter and published by bluez using DBus Introspection API.
      * @param adapter bluetooth adapter
      */
     public void findBtDevicesByIntrospection(BluetoothAdapter adapter) {
+        if (liveRegistry != null) {
+            // device list is maintained by the registry
+            return;
+        }
+
+        synchronized (deviceScanLocks.computeIfAbsent(adapter.getDbusPath(), k -> new Object())) {
+            updateDevicesByIntrospection(adapter);
+        }
+    }
+
+    private void updateDevicesByIntrospection(BluetoothAdapter adapter) {
         Set<String> scanObjectManager = DbusHelper.findNodes(dbusConnection, adapter.getDbusPath());
 
         String adapterMac = adapter.getAddress();
         List<BluetoothDevice> foundDevices = new ArrayList<>();
 
-        // remove all devices from previous calls so unavailable devices will be removed
-        // and only devices found in the current introspection result will be used
-        List<BluetoothDevice> knownBefore = bluetoothDeviceByAdapterMac.put(adapterMac, foundDevices);
-
+        List<BluetoothDevice> knownBefore = adapterMac == null ? null : bluetoothDeviceByAdapterMac.get(adapterMac);
         if (knownBefore == null) {
             knownBefore = Collections.emptyList();
         }
+        Map<String, BluetoothDevice> knownByPath = new HashMap<>();
+        for (BluetoothDevice bd : knownBefore) {
+            knownByPath.put(bd.getDbusPath(), bd);
+        }
 
         for (String path : scanObjectManager) {
             String devicePath = "/org/bluez/" + adapter.getDeviceName() + "/" + path;
-            Optional<BluetoothDevice> knownDevice = knownBefore.stream()
-                    .filter(bd -> devicePath.equals(bd.getDbusPath()))
-                    .findFirst();
+            BluetoothDevice knownDevice = knownByPath.get(devicePath);
 
-            if (lazyScan && knownDevice.isPresent()) {
-                BluetoothDevice btDev = knownDevice.get();
+            if (lazyScan && knownDevice != null) {
+                BluetoothDevice btDev = knownDevice;
 
                 if (logger.isDebugEnabled()) {
                     logger.debug("Found bluetooth device {} on adapter {} again", btDev.getAddress(), adapterMac);
@@ -210,16 +458,281 @@ public class DeviceManager {
             Device1 device = DbusHelper.getRemoteObject(dbusConnection, devicePath, Device1.class);
             if (device != null) {
                 BluetoothDevice btDev = new BluetoothDevice(device, adapter, devicePath, dbusConnection);
+                if (propertyCacheMaxAge >= 0) {
+                    btDev.enablePropertyCache(propertyCacheMaxAge);
+                }
 
                 if (logger.isDebugEnabled()) {
                     logger.debug("Found bluetooth device {} on adapter {}", btDev.getAddress(), adapterMac);
                 }
 
                 foundDevices.add(btDev);
+                indexDevice(btDev);
+            }
+        }
+
+        // replace the list of previous calls so unavailable devices will be removed
+        // and only devices found in the current introspection result will be used
+        if (adapterMac != null) {
+            bluetoothDeviceByAdapterMac.put(adapterMac, new CopyOnWriteArrayList<>(foundDevices));
+        }
+
+        // device objects which were not reused are no longer needed, stop receiving signals for them
+        Set<BluetoothDevice> reused = Collections.newSetFromMap(new IdentityHashMap<>());
+        reused.addAll(foundDevices);
+        for (BluetoothDevice oldDevice : knownBefore) {
+            if (!reused.contains(oldDevice)) {
+                oldDevice.disablePropertyCache();
+                unindexDevice(oldDevice);
+            }
+        }
+    }
+
+    /**
+     * Get a known bluetooth device by its bluetooth (MAC) address.<br>
+     * Will not scan for devices, only devices found by previous scans (or the live registry) are returned.
+     * If the device was found by multiple adapters, the device object created last is returned.
+     *
+     * @param _address MAC address of the device (case insensitive)
+     * @return device or null if no such device is known or address is invalid
+     */
+    public BluetoothDevice getDeviceByAddress(String _address) {
+        if (_address == null) {
+            return null;
+        }
+        try {
+            return getDeviceByAddress(BluetoothAddress.parse(_address));
+        } catch (IllegalArgumentException _ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Get a known bluetooth device by its bluetooth (MAC) address.
+     *
+     * @param _address address of the device
+     * @return device or null if no such device is known
+     * @see #getDeviceByAddress(String)
+     */
+    public BluetoothDevice getDeviceByAddress(BluetoothAddress _address) {
+        return _address == null ? null : bluetoothDeviceByAddress.get(_address);
+    }
+
+    /**
+     * Get a known bluetooth device by its DBus object path (e.g. /org/bluez/hci0/dev_AA_BB_CC_DD_EE_FF).<br>
+     * Will not scan for devices, only devices found by previous scans (or the live registry) are returned.
+     *
+     * @param _dbusPath DBus object path
+     * @return device or null if no such device is known
+     */
+    public BluetoothDevice getDeviceByPath(String _dbusPath) {
+        return _dbusPath == null ? null : bluetoothDeviceByPath.get(_dbusPath);
+    }
+
+    /**
+     * Load all adapters, devices and GATT objects published by bluez using a single
+     * ObjectManager.GetManagedObjects call.<br>
+     * All properties are transferred within this call, so no further introspection or property queries are needed
+     * to setup the adapter and device lists. The GATT services, characteristics and descriptors of each device
+     * are already linked to the returned device objects.
+     * <br>
+     * All adapter and device objects known before will be replaced. The lists are updated entry by entry,
+     * so concurrent readers never see empty adapter or device lists.
+     * If the live registry is enabled, the tree maintained by the registry is returned instead.
+     * Will set the defaultAdapter to the first adapter found if no defaultAdapter was specified before.
+     *
+     * @return {@link ManagedObjectTree} containing all objects
+     * @throws DBusException when bluez object manager could not be queried
+     */
+    public ManagedObjectTree loadManagedObjects() throws DBusException {
+        if (liveRegistry != null) {
+            return liveRegistry;
+        }
+        ManagedObjectTree tree = ManagedObjectTree.load(dbusConnection, propertyCacheMaxAge);
+
+        Set<AbstractBluetoothObject> previous = getKnownObjects();
+        for (BluetoothAdapter adapter : tree.getAdapters()) {
+            addAdapter(adapter, tree.getProperties(adapter.getDbusPath(), Adapter1.class.getName()));
+        }
+        for (BluetoothDevice device : tree.getDevices()) {
+            addDevice(device);
+        }
+        removeObjectsNotIn(tree, previous);
+
+        return tree;
+    }
+
+    /**
+     * Enable the live registry.<br>
+     * All adapters, devices and GATT objects are loaded once using {@link #loadManagedObjects()}.
+     * Afterwards the InterfacesAdded/InterfacesRemoved signals of bluez are used to add and remove
+     * objects as soon as bluez publishes or removes them.
+     * <br>
+     * While the registry is enabled, adapter and device lists are always up to date and scanning will
+     * not rebuild them. Known objects will never be replaced by new objects.
+     *
+     * @throws DBusException when objects could not be loaded or signal handlers could not be registered
+     */
+    public synchronized void enableLiveRegistry() throws DBusException {
+        if (liveRegistry != null) {
+            return;
+        }
+
+        // the registry listener adds all objects of the tree, afterwards all objects not part of the tree are removed
+        Set<AbstractBluetoothObject> previous = getKnownObjects();
+        ManagedObjectTree tree = ManagedObjectTree.loadAndTrack(dbusConnection, propertyCacheMaxAge, new RegistryListener());
+        removeObjectsNotIn(tree, previous);
+        liveRegistry = tree;
+    }
+
+    /**
+     * All adapter and device objects currently referenced by any map (compared by identity).
+     */
+    private Set<AbstractBluetoothObject> getKnownObjects() {
+        Set<AbstractBluetoothObject> known = Collections.newSetFromMap(new IdentityHashMap<>());
+        known.addAll(bluetoothAdaptersByAdapterName.values());
+        known.addAll(bluetoothAdaptersByMac.values());
+        bluetoothDeviceByAdapterMac.values().forEach(known::addAll);
+        known.addAll(bluetoothDeviceByPath.values());
+        known.addAll(bluetoothDeviceByAddress.values());
+        return known;
+    }
+
+    /**
+     * Remove all adapters and devices which are not part of the given tree.<br>
+     * The maps are updated entry by entry, so concurrent readers never see empty lists.
+     * The property cache of all given previous objects which are not part of the tree is disabled.
+     *
+     * @param _tree tree containing all current objects
+     * @param _previous objects known before the tree was applied
+     */
+    private void removeObjectsNotIn(ManagedObjectTree _tree, Set<AbstractBluetoothObject> _previous) {
+        Set<AbstractBluetoothObject> current = Collections.newSetFromMap(new IdentityHashMap<>());
+        current.addAll(_tree.getAdapters());
+        current.addAll(_tree.getDevices());
+
+        bluetoothAdaptersByAdapterName.values().removeIf(a -> !current.contains(a));
+        bluetoothAdaptersByMac.values().removeIf(a -> !current.contains(a));
+        bluetoothDeviceByAdapterMac.keySet().retainAll(bluetoothAdaptersByMac.keySet());
+        for (List<BluetoothDevice> devices : bluetoothDeviceByAdapterMac.values()) {
+            devices.removeIf(d -> !current.contains(d));
+        }
+        bluetoothDeviceByPath.values().removeIf(d -> !current.contains(d));
+        bluetoothDeviceByAddress.values().removeIf(d -> !current.contains(d));
+
+        for (AbstractBluetoothObject obj : _previous) {
+            if (!current.contains(obj)) {
+                obj.disablePropertyCache();
             }
         }
     }
 
+    /**
+     * Disable the live registry.<br>
+     * All known objects remain available, but changes published by bluez will no longer be applied.
+     */
+    public synchronized void disableLiveRegistry() {
+        if (liveRegistry != null) {
+            liveRegistry.stopTracking();
+            liveRegistry = null;
+        }
+    }
+
+    /**
+     * Returns true if the live registry is enabled.
+     * @return true if enabled
+     * @see #enableLiveRegistry()
+     */
+    public boolean isLiveRegistryEnabled() {
+        return liveRegistry != null;
+    }
+
+    private void addAdapter(BluetoothAdapter _adapter, Map<String, Variant<?>> _properties) {
+        Variant<?> address = _properties.get("Address");
+        String adapterMac = address != null ? address.getValue().toString() : _adapter.getAddress();
+
+        bluetoothAdaptersByAdapterName.put(_adapter.getDeviceName(), _adapter);
+        if (adapterMac == null) {
+            return;
+        }
+        bluetoothAdaptersByMac.put(adapterMac, _adapter);
+        bluetoothDeviceByAdapterMac.computeIfAbsent(adapterMac, k -> new CopyOnWriteArrayList<>());
+
+        if (defaultAdapterMac == null) {
+            defaultAdapterMac = adapterMac;
+        }
+    }
+
+    private void removeAdapter(BluetoothAdapter _adapter) {
+        String adapterMac = getAdapterMac(_adapter);
+        if (adapterMac != null) {
+            bluetoothAdaptersByMac.remove(adapterMac);
+            List<BluetoothDevice> devices = bluetoothDeviceByAdapterMac.remove(adapterMac);
+            if (devices != null) {
+                devices.forEach(this::unindexDevice);
+            }
+        }
+        bluetoothAdaptersByAdapterName.remove(_adapter.getDeviceName());
+        deviceScanLocks.remove(_adapter.getDbusPath());
+    }
+
+    private void addDevice(BluetoothDevice _device) {
+        String adapterMac = getAdapterMac(_device.getAdapter());
+        if (adapterMac != null) {
+            addOrReplaceDevice(bluetoothDeviceByAdapterMac.computeIfAbsent(adapterMac, k -> new CopyOnWriteArrayList<>()), _device);
+        }
+        indexDevice(_device);
+    }
+
+    /**
+     * Add the device to the given device list or replace the entry with the same object path.
+     * The list is never shrunk, so concurrent readers always see the device.
+     */
+    private static void addOrReplaceDevice(List<BluetoothDevice> _devices, BluetoothDevice _device) {
+        String path = _device.getDbusPath();
+        synchronized (_devices) {
+            if (_devices.stream().anyMatch(d -> d.getDbusPath().equals(path))) {
+                _devices.replaceAll(d -> d.getDbusPath().equals(path) ? _device : d);
+            } else {
+                _devices.add(_device);
+            }
+        }
+    }
+
+    private void removeDevice(BluetoothDevice _device) {
+        String adapterMac = getAdapterMac(_device.getAdapter());
+        List<BluetoothDevice> devices = adapterMac != null ? bluetoothDeviceByAdapterMac.get(adapterMac) : null;
+        if (devices != null) {
+            devices.removeIf(d -> d == _device);
+        }
+        unindexDevice(_device);
+    }
+
+    private void indexDevice(BluetoothDevice _device) {
+        bluetoothDeviceByPath.put(_device.getDbusPath(), _device);
+        BluetoothAddress address = _device.getBluetoothAddress();
+        if (address != null) {
+            bluetoothDeviceByAddress.put(address, _device);
+        }
+    }
+
+    private void unindexDevice(BluetoothDevice _device) {
+        bluetoothDeviceByPath.remove(_device.getDbusPath(), _device);
+        BluetoothAddress address = _device.getBluetoothAddress();
+        if (address != null) {
+            bluetoothDeviceByAddress.remove(address, _device);
+        }
+    }
+
+    private String getAdapterMac(BluetoothAdapter _adapter) {
+        for (Entry<String, BluetoothAdapter> entry : bluetoothAdaptersByMac.entrySet()) {
+            if (entry.getValue() == _adapter) {
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+
     /**
      * Setup bluetooth scan/discovery filter.
      *
@@ -230,20 +743,19 @@ public class DeviceManager {
      * @throws BluezFailedException on failure
      */
     public void setScanFilter(Map<DiscoveryFilter, Object> _filter) throws BluezInvalidArgumentsException, BluezNotReadyException, BluezNotSupportedException, BluezFailedException {
-        Map<String, Variant<?>> filters = new LinkedHashMap<>();
-        for (Entry<DiscoveryFilter, Object> entry : _filter.entrySet()) {
-            if (!entry.getKey().getValueClass().isInstance(entry.getValue())) {
-                throw new BluezInvalidArgumentsException("Filter value not of required type " + entry.getKey().getValueClass());
-            }
-            if (entry.getValue() instanceof Enum<?>) {
-                filters.put(entry.getKey().name(), new Variant<>(entry.getValue().toString()));
-            } else {
-                filters.put(entry.getKey().name(), new Variant<>(entry.getValue()));
-            }
-
-        }
+        setScanFilter(DiscoveryFilterOptions.of(_filter));
+    }
 
-        getAdapter().setDiscoveryFilter(filters);
+    /**
+     * Setup bluetooth scan/discovery filter using a prebuilt filter.
+     *
+     * @param _filter filter to apply
+     * @throws BluezNotReadyException when bluez not ready
+     * @throws BluezNotSupportedException when operation not supported
+     * @throws BluezFailedException on failure
+     */
+    public void setScanFilter(DiscoveryFilterOptions _filter) throws BluezNotReadyException, BluezNotSupportedException, BluezFailedException {
+        getAdapter().setDiscoveryFilter(_filter);
     }
 
     /**
@@ -251,8 +763,10 @@ public class DeviceManager {
      * @return the adapter currently in use, maybe null
      */
     public BluetoothAdapter getAdapter() {
-        if (defaultAdapterMac != null && bluetoothAdaptersByMac.containsKey(defaultAdapterMac)) {
-            return bluetoothAdaptersByMac.get(defaultAdapterMac);
+        String adapterMac = defaultAdapterMac;
+        BluetoothAdapter adapter = adapterMac != null ? bluetoothAdaptersByMac.get(adapterMac) : null;
+        if (adapter != null) {
+            return adapter;
         } else {
             return scanForBluetoothAdapters().get(0);
         }
@@ -274,28 +788,28 @@ public class DeviceManager {
         if (_ident == null) {
             _ident = defaultAdapterMac;
         }
-
-        if (bluetoothAdaptersByMac.containsKey(_ident)) {
-            return bluetoothAdaptersByMac.get(_ident);
+        if (_ident == null) {
+            return null;
         }
-        if (bluetoothAdaptersByAdapterName.containsKey(_ident)) {
-            return bluetoothAdaptersByAdapterName.get(_ident);
+
+        BluetoothAdapter adapter = findKnownAdapter(_ident);
+        if (adapter != null) {
+            return adapter;
         }
         // adapter not found by any identification, search for new adapters
         List<BluetoothAdapter> scanForBluetoothAdapters = scanForBluetoothAdapters();
         if (!scanForBluetoothAdapters.isEmpty()) { // there are new candidates, try once more
-            if (bluetoothAdaptersByMac.containsKey(_ident)) {
-                return bluetoothAdaptersByMac.get(_ident);
-            }
-            if (bluetoothAdaptersByAdapterName.containsKey(_ident)) {
-                return bluetoothAdaptersByAdapterName.get(_ident);
-            }
-
+            return findKnownAdapter(_ident);
         }
         // no luck, no adapters found which are matching the given identification
         return null;
     }
 
+    private BluetoothAdapter findKnownAdapter(String _ident) {
+        BluetoothAdapter adapter = bluetoothAdaptersByMac.get(_ident);
+        return adapter != null ? adapter : bluetoothAdaptersByAdapterName.get(_ident);
+    }
+
     /**
      * Returns all found bluetooth adapters.
      * Will query for adapters if {@link #scanForBluetoothAdapters()} was not called before.
@@ -305,7 +819,7 @@ public class DeviceManager {
         if (bluetoothAdaptersByMac.isEmpty()) {
             scanForBluetoothAdapters();
         }
-        return new ArrayList<>(bluetoothAdaptersByMac.values());
+        return new ArrayList<>(bluetoothAdaptersByAdapterName.values());
     }
 
     /**
@@ -349,7 +863,7 @@ public class DeviceManager {
             }
         }
 
-        return bluetoothDeviceByAdapterMac.getOrDefault(_adapterMac, new ArrayList<>());
+        return _adapterMac == null ? new ArrayList<>() : bluetoothDeviceByAdapterMac.getOrDefault(_adapterMac, new ArrayList<>());
     }
 
     /**
@@ -362,7 +876,7 @@ public class DeviceManager {
         if (bluetoothAdaptersByMac.isEmpty()) {
             scanForBluetoothAdapters();
         }
-        if (bluetoothAdaptersByMac.containsKey(_adapterMac)) {
+        if (_adapterMac != null && bluetoothAdaptersByMac.containsKey(_adapterMac)) {
             defaultAdapterMac = _adapterMac;
         } else {
             throw new BluezDoesNotExistException("Could not find bluetooth adapter with MAC address: " + _adapterMac);
@@ -396,6 +910,23 @@ public class DeviceManager {
         lazyScan = _scan;
     }
 
+    /**
+     * Enable/disable the property cache for all adapter and device objects created by this manager.<br>
+     * GATT services, characteristics and descriptors will use the same setting as the device they belong to.
+     * <br>
+     * When enabled, property values are read once using GetAll and then updated by PropertiesChanged signals,
+     * so getters like {@link BluetoothDevice#getRssi()} do not cause a DBus call each time.
+     * <br>
+     * The default is -1 (caching disabled)
+     *
+     * @param _maxAgeMillis maximum age of cached values in milliseconds,
+     *          0 to rely on signals only, negative value to disable caching
+     * @see BluetoothDevice#enablePropertyCache(long)
+     */
+    public void setPropertyCacheMaxAge(long _maxAgeMillis) {
+        propertyCacheMaxAge = _maxAgeMillis;
+    }
+
     /**
      * Register a PropertiesChanged callback handler on the DBusConnection.
      *
@@ -438,6 +969,31 @@ public class DeviceManager {
         dbusConnection.removeSigHandler(_handler.getImplementationClass(), _handler);
     }
 
+    /**
+     * Applies changes reported by the live registry to the adapter and device maps.
+     */
+    private final class RegistryListener implements ManagedObjectListener {
+        @Override
+        public void onObjectAdded(AbstractBluetoothObject _object, Map<String, Variant<?>> _properties) {
+            if (_object instanceof BluetoothAdapter) {
+                addAdapter((BluetoothAdapter) _object, _properties);
+            } else if (_object instanceof BluetoothDevice) {
+                logger.debug("Bluetooth device {} added", _object.getDbusPath());
+                addDevice((BluetoothDevice) _object);
+            }
+        }
+
+        @Override
+        public void onObjectRemoved(AbstractBluetoothObject _object) {
+            if (_object instanceof BluetoothAdapter) {
+                removeAdapter((BluetoothAdapter) _object);
+            } else if (_object instanceof BluetoothDevice) {
+                logger.debug("Bluetooth device {} removed", _object.getDbusPath());
+                removeDevice((BluetoothDevice) _object);
+            }
+        }
+    }
+
     /**
      * Get the DBusConnection provided in constructor.
      * @return {@link DBusConnection}
@@ -1,15 +1,19 @@
 package com.github.hypfvieh.bluetooth.wrapper;
 
 import com.github.hypfvieh.DbusHelper;
+import com.github.hypfvieh.DbusSignalDispatcher;
 import org.freedesktop.dbus.connections.impl.DBusConnection;
 import org.freedesktop.dbus.exceptions.DBusException;
 import org.freedesktop.dbus.exceptions.DBusExecutionException;
 import org.freedesktop.dbus.interfaces.DBusInterface;
+import org.freedesktop.dbus.interfaces.DBusSigHandler;
 import org.freedesktop.dbus.interfaces.Properties;
+import org.freedesktop.dbus.interfaces.Properties.PropertiesChanged;
 import org.freedesktop.dbus.types.Variant;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.Map.Entry;
 
@@ -27,6 +31,13 @@ public abstract class AbstractBluetoothObject {
     private DBusConnection dbusConnection;
     private final String dbusPath;
 
+    /** Local property cache, null if caching is disabled. */
+    private volatile PropertyCache propertyCache;
+    private final DBusSigHandler<PropertiesChanged> propertyCacheUpdater = this::updatePropertyCache;
+
+    /** Properties proxy of this object, created on first property access. */
+    private volatile Properties propertiesProxy;
+
     public AbstractBluetoothObject(BluetoothDeviceType _bluetoothType, DBusConnection _dbusConnection, String _dbusPath) {
         bluetoothType = _bluetoothType;
         dbusConnection = _dbusConnection;
@@ -51,6 +62,146 @@ public abstract class AbstractBluetoothObject {
         return dbusConnection;
     }
 
+    /**
+     * Enable the local property cache of this object.<br>
+     * The cache is filled by one GetAll call and will be kept up to date using PropertiesChanged signals.
+     * All property getters will use the cached values as long as they are not older than the given maximum age.<br>
+     * Calling this method on an object with enabled cache will replace the cache.
+     *
+     * @param _maxAgeMillis maximum age of cached values in milliseconds, 0 or less to rely on signals only
+     * @return true if cache was enabled, false if cache could not be initialized
+     */
+    public boolean enablePropertyCache(long _maxAgeMillis) {
+        return enablePropertyCache(_maxAgeMillis, null);
+    }
+
+    /**
+     * Enable the local property cache using already known property values.
+     *
+     * @param _maxAgeMillis maximum age of cached values in milliseconds, 0 or less to rely on signals only
+     * @param _properties all properties of this object, null to query them using GetAll
+     * @return true if cache was enabled, false if cache could not be initialized
+     */
+    boolean enablePropertyCache(long _maxAgeMillis, Map<String, Variant<?>> _properties) {
+        disablePropertyCache();
+        PropertyCache cache = new PropertyCache(_maxAgeMillis);
+        try {
+            DbusSignalDispatcher.getInstance(dbusConnection).addPropertiesChangedHandler(dbusPath, propertyCacheUpdater);
+            propertyCache = cache;
+            if (_properties != null) {
+                cache.seed(_properties);
+            } else {
+                refreshPropertyCache();
+            }
+            return true;
+        } catch (DBusException _ex) {
+            logger.warn("Unable to register property cache for {}", dbusPath, _ex);
+            disablePropertyCache();
+            return false;
+        }
+    }
+
+    /**
+     * Disable the local property cache.
+     * All following property reads will be done on the remote object.
+     */
+    public void disablePropertyCache() {
+        if (propertyCache != null) {
+            propertyCache = null;
+            DbusSignalDispatcher.getInstance(dbusConnection).removePropertiesChangedHandler(dbusPath, propertyCacheUpdater);
+        }
+    }
+
+    /**
+     * Returns true if the local property cache is used.
+     * @return true if enabled
+     */
+    public boolean isPropertyCacheEnabled() {
+        return propertyCache != null;
+    }
+
+    /**
+     * Maximum age of cached property values in milliseconds.
+     * @return max age, 0 if values never expire or -1 if cache is disabled
+     */
+    public long getPropertyCacheMaxAge() {
+        PropertyCache cache = propertyCache;
+        return cache == null ? -1 : cache.getMaxAgeMillis();
+    }
+
+    /**
+     * Reload all cached properties from the remote object using one GetAll call.<br>
+     * Does nothing if property cache is disabled.
+     */
+    public void refreshPropertyCache() {
+        PropertyCache cache = propertyCache;
+        if (cache == null) {
+            return;
+        }
+        try {
+            Properties remoteObject = getPropertiesProxy();
+            cache.seed(remoteObject.GetAll(getInterfaceClass().getName()));
+        } catch (DBusException | DBusExecutionException _ex) {
+            logger.trace("Error while receiving all properties from DBUS (Path: {}).", dbusPath, _ex);
+            cache.clear();
+        }
+    }
+
+    /**
+     * Read all properties of this object using a single GetAll call.<br>
+     * If the property cache is enabled, it will be refreshed with the received values as well.
+     *
+     * @return snapshot, contains no properties if remote object could not be queried
+     */
+    public PropertySnapshot snapshot() {
+        return new PropertySnapshot(dbusPath, getInterfaceClass().getName(), getAllProperties());
+    }
+
+    /**
+     * Helper to get all DBus properties of this object using one GetAll call.
+     * @return Map of property name and value, maybe empty but never null
+     */
+    protected Map<String, Object> getAllProperties() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        try {
+            Map<String, Variant<?>> properties = getPropertiesProxy().GetAll(getInterfaceClass().getName());
+            PropertyCache cache = propertyCache;
+            if (cache != null) {
+                cache.seed(properties);
+            }
+            for (Entry<String, Variant<?>> entry : properties.entrySet()) {
+                result.put(entry.getKey(), entry.getValue().getValue());
+            }
+        } catch (DBusException | DBusExecutionException _ex) {
+            logger.trace("Error while receiving all properties from DBUS (Path: {}).", dbusPath, _ex);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the Properties proxy of this object.
+     * @return proxy, never null
+     * @throws DBusException if proxy could not be created
+     */
+    protected Properties getPropertiesProxy() throws DBusException {
+        Properties proxy = propertiesProxy;
+        if (proxy == null) {
+            proxy = DbusHelper.getRemoteObject(dbusConnection, dbusPath, Properties.class);
+            if (proxy == null) {
+                throw new DBusException("Unable to create Properties proxy for " + dbusPath);
+            }
+            propertiesProxy = proxy;
+        }
+        return proxy;
+    }
+
+    private void updatePropertyCache(PropertiesChanged _signal) {
+        PropertyCache cache = propertyCache;
+        if (cache != null && getInterfaceClass().getName().equals(_signal.getInterfaceName())) {
+            cache.update(_signal.getPropertiesChanged(), _signal.getPropertiesRemoved());
+        }
+    }
+
     /**
      * Helper to get remote objects from DBus.
      * @param _objectNames Set of object names to retrieve [e.g service0000, service0001]
@@ -82,18 +233,114 @@ public abstract class AbstractBluetoothObject {
      * @return value of _field as _type class or null
      */
     protected <T> T getTyped(String _field, Class<T> _type) {
+        return getTyped(_field, _type, false);
+    }
+
+    /**
+     * Helper to get a value of a DBus property.
+     * @param _field DBus property key
+     * @param _type expected return type of DBus property
+     * @param _forceRemote true to always query the remote object, even if property cache is enabled
+     * @param <T> class of the expected result
+     * @return value of _field as _type class or null
+     */
+    protected <T> T getTyped(String _field, Class<T> _type, boolean _forceRemote) {
         Objects.requireNonNull(_type, "Class required");
         Objects.requireNonNull(_field, "Property name required");
 
-        try {
-            Properties remoteObject = dbusConnection.getRemoteObject("org.bluez", dbusPath, Properties.class);
-            Object obj = remoteObject.Get(getInterfaceClass().getName(), _field);
-            if (_type.isAssignableFrom(obj.getClass())) {
-                return _type.cast(obj);
+        Object obj = getPropertyValue(_field, _forceRemote);
+        if (obj != null && _type.isAssignableFrom(obj.getClass())) {
+            return _type.cast(obj);
+        }
+        return null;
+    }
+
+    /**
+     * Helper to get the value of a DBus byte array property (signature 'ay').<br>
+     * Values received by GetAll or PropertiesChanged are converted to byte[] once when they are cached,
+     * so reading a cached value only copies the array.
+     *
+     * @param _field DBus property key
+     * @return copy of the value or null
+     */
+    protected byte[] getBytes(String _field) {
+        byte[] value = getByteArrayValue(_field);
+        return value != null ? value.clone() : null;
+    }
+
+    /**
+     * Helper to copy the value of a DBus byte array property (signature 'ay') into the given buffer.<br>
+     * The value is written at the current position of the buffer, the position is advanced by the number of bytes written.
+     *
+     * @param _field DBus property key
+     * @param _target target buffer
+     * @return number of bytes written or -1 if value is not available
+     * @throws java.nio.BufferOverflowException if the remaining space of the buffer is too small, nothing is written in that case
+     */
+    protected int getBytes(String _field, ByteBuffer _target) {
+        Objects.requireNonNull(_target, "Target buffer required");
+        byte[] value = getByteArrayValue(_field);
+        if (value == null) {
+            return -1;
+        }
+        _target.put(value);
+        return value.length;
+    }
+
+    /**
+     * Returns the byte array value of a property without copying it.
+     * The returned array may be shared with the property cache and must not be modified.
+     */
+    private byte[] getByteArrayValue(String _field) {
+        Objects.requireNonNull(_field, "Property name required");
+
+        PropertyCache cache = propertyCache;
+        if (cache != null) {
+            Object cached = cache.lookup(_field);
+            if (cached == PropertyCache.ABSENT) {
+                return null;
+            } else if (cached != null) {
+                return PropertyCache.toByteArray(cached);
             }
+        }
 
+        Object obj = getRemotePropertyValue(_field);
+        if (obj == null) {
+            return null;
+        }
+        byte[] value = PropertyCache.toByteArray(obj);
+        if (cache != null && value != null) {
+            cache.put(_field, value);
+        }
+        return value;
+    }
+
+    /**
+     * Returns the value of a property from the property cache (if enabled) or the remote object.
+     */
+    private Object getPropertyValue(String _field, boolean _forceRemote) {
+        PropertyCache cache = propertyCache;
+        if (cache != null && !_forceRemote) {
+            Object cached = cache.lookup(_field);
+            if (cached == PropertyCache.ABSENT) {
+                return null;
+            } else if (cached != null) {
+                return cached;
+            }
+        }
+
+        Object obj = getRemotePropertyValue(_field);
+        if (cache != null && obj != null) {
+            cache.put(_field, obj);
+        }
+        return obj;
+    }
+
+    private Object getRemotePropertyValue(String _field) {
+        try {
+            return getPropertiesProxy().Get(getInterfaceClass().getName(), _field);
         } catch (DBusException | DBusExecutionException _ex) {
-            logger.trace("Error while receiving data from DBUS (Field: {}, Type: {}).", _field, _type, _ex);
+            logger.trace("Error while receiving data from DBUS (Field: {}).", _field, _ex);
         }
         return null;
     }
@@ -106,8 +353,13 @@ public abstract class AbstractBluetoothObject {
      */
     protected void setTyped(String _field, Object _value) {
         try {
-            Properties remoteObject = dbusConnection.getRemoteObject("org.bluez", dbusPath, Properties.class);
+            Properties remoteObject = getPropertiesProxy();
             remoteObject.Set(getInterfaceClass().getName(), _field, _value);
+            PropertyCache cache = propertyCache;
+            if (cache != null) {
+                // bluez may adjust the value, use the next signal or read to get the real value
+                cache.remove(_field);
+            }
         } catch (DBusException _ex) {
             logger.trace("Error while setting data for DBUS (Field: {}, Value: {}).", _field, _value, _ex);
         }
@@ -0,0 +1,54 @@
+package com.github.hypfvieh.bluetooth.wrapper;
+
+import org.freedesktop.dbus.types.Variant;
+
+import java.util.*;
+
+/**
+ * Base class of immutable option objects passed to bluez methods expecting a {@code a{sv}} dictionary.<br>
+ * The variant map is created once when the object is created, so an instance can be reused
+ * for any number of calls without creating new maps or variants.
+ *
+ * @author hypfvieh
+ */
+abstract class AbstractVariantOptions {
+
+    private final Map<String, Variant<?>> variants;
+
+    AbstractVariantOptions(Map<String, Variant<?>> _variants) {
+        variants = Collections.unmodifiableMap(new LinkedHashMap<>(_variants));
+    }
+
+    /**
+     * The options as passed to bluez.
+     * @return unmodifiable map, never null
+     */
+    public Map<String, Variant<?>> toVariantMap() {
+        return variants;
+    }
+
+    /**
+     * Returns the unwrapped value of the given option.
+     * @param _key option key
+     * @return value or null if not set
+     */
+    Object getOption(String _key) {
+        Variant<?> variant = variants.get(_key);
+        return variant == null ? null : variant.getValue();
+    }
+
+    @Override
+    public int hashCode() {
+        return variants.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object _obj) {
+        return this == _obj || _obj != null && _obj.getClass() == getClass() && ((AbstractVariantOptions) _obj).variants.equals(variants);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " " + variants;
+    }
+}
@@ -0,0 +1,64 @@
+package com.github.hypfvieh.bluetooth.wrapper;
+
+import java.util.Map;
+
+/**
+ * Immutable snapshot of all properties of a bluetooth adapter (org.bluez.Adapter1).
+ *
+ * @see BluetoothAdapter#snapshot()
+ * @author hypfvieh
+ */
+public class AdapterSnapshot extends PropertySnapshot {
+
+    AdapterSnapshot(String _dbusPath, String _interfaceName, Map<String, Object> _properties) {
+        super(_dbusPath, _interfaceName, _properties);
+    }
+
+    public String getAddress() {
+        return getValue("Address", String.class);
+    }
+
+    public String getName() {
+        return getValue("Name", String.class);
+    }
+
+    public String getAlias() {
+        return getValue("Alias", String.class);
+    }
+
+    public String getModAlias() {
+        return getValue("Modalias", String.class);
+    }
+
+    public Boolean isPowered() {
+        return getValue("Powered", Boolean.class);
+    }
+
+    public Boolean isDiscoverable() {
+        return getValue("Discoverable", Boolean.class);
+    }
+
+    public Integer getDiscoverableTimeout() {
+        return getUnsigned("DiscoverableTimeout");
+    }
+
+    public Boolean isPairable() {
+        return getValue("Pairable", Boolean.class);
+    }
+
+    public Integer getPairableTimeout() {
+        return getUnsigned("PairableTimeout");
+    }
+
+    public Boolean isDiscovering() {
+        return getValue("Discovering", Boolean.class);
+    }
+
+    public Integer getDeviceClass() {
+        return getUnsigned("Class");
+    }
+
+    public String[] getUuids() {
+        return getStringArray("UUIDs");
+    }
+}
@@ -24,6 +24,8 @@ public class BluetoothAdapter extends AbstractBluetoothObject {
 
     private final Adapter1 adapter;
 
+    private final BluetoothConnectionManager connectionManager = new BluetoothConnectionManager(this);
+
     /** Used to toggle discovery-mode because {@link #isDiscovering()} not always working as expected. */
     private boolean internalDiscover;
 
@@ -53,7 +55,24 @@ public class BluetoothAdapter extends AbstractBluetoothObject {
     public Adapter1 getRawAdapter() {
         return adapter;
     }
+
+    /**
+     * Connection manager limiting the number of devices connected through this adapter at the same time.
+     * @return manager, never null
+     */
+    public BluetoothConnectionManager getConnectionManager() {
+        return connectionManager;
+    }
     
+    /**
+     * Read all properties of this adapter using a single GetAll call.
+     * @return snapshot, never null
+     */
+    @Override
+    public AdapterSnapshot snapshot() {
+        return new AdapterSnapshot(getDbusPath(), getInterfaceClass().getName(), getAllProperties());
+    }
+
     /**
      * Get the deviceName used in DBus (e.g. hci0).
      *
@@ -353,6 +372,37 @@ public class BluetoothAdapter extends AbstractBluetoothObject {
         adapter.SetDiscoveryFilter(_filter);
     }
 
+    /**
+     * Set a prebuilt discovery filter.<br>
+     * The filter values are validated when the {@link DiscoveryFilterOptions} are created,
+     * so the same filter object can be used repeatedly without any further conversion.
+     *
+     * @param _filter filter to use, {@link DiscoveryFilterOptions#NONE} to remove the filter
+     * @throws BluezNotReadyException when bluez not ready if adapter not ready
+     * @throws BluezNotSupportedException when operation not supported if operation not supported
+     * @throws BluezFailedException on failure any other error
+     */
+    public void setDiscoveryFilter(DiscoveryFilterOptions _filter) throws BluezNotReadyException, BluezNotSupportedException, BluezFailedException {
+        adapter.SetDiscoveryFilter(_filter.toVariantMap());
+    }
+
+    /**
+     * Connect to a device without discovering it first.<br>
+     * The device object is created by bluez, it will be published using InterfacesAdded.
+     *
+     * @param _options address and address type of the device
+     * @return DBus object path of the created device, maybe null
+     * @throws BluezInvalidArgumentsException when argument is invalid
+     * @throws BluezAlreadyExistsException when device already exists
+     * @throws BluezNotSupportedException when operation not supported
+     * @throws BluezNotReadyException when bluez not ready
+     * @throws BluezFailedException on failure
+     */
+    public String connectDevice(ConnectDeviceOptions _options) throws BluezInvalidArgumentsException, BluezAlreadyExistsException, BluezNotSupportedException, BluezNotReadyException, BluezFailedException {
+        DBusPath path = adapter.ConnectDevice(_options.toVariantMap());
+        return path == null ? null : path.getPath();
+    }
+
 
     @Override
     public String toString() {
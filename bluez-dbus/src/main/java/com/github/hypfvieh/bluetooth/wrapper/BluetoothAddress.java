@@ -0,0 +1,149 @@
+package com.github.hypfvieh.bluetooth.wrapper;
+
+/**
+ * Immutable bluetooth (MAC) address.<br>
+ * The address is stored as 48-bit value packed into a long, so it is cheap to compare, hash and store.
+ *
+ * @author hypfvieh
+ */
+public final class BluetoothAddress implements Comparable<BluetoothAddress> {
+
+    private static final char[] HEX_CHARS = "0123456789ABCDEF".toCharArray();
+    private static final long MAX_VALUE = 0xFFFFFFFFFFFFL;
+    private static final String DEVICE_PATH_PREFIX = "dev_";
+
+    private final long value;
+
+    private BluetoothAddress(long _value) {
+        value = _value;
+    }
+
+    /**
+     * Create an address from the given 48-bit value.
+     *
+     * @param _value address value
+     * @return address
+     * @throws IllegalArgumentException if value does not fit in 48 bits
+     */
+    public static BluetoothAddress of(long _value) {
+        if (_value < 0 || _value > MAX_VALUE) {
+            throw new IllegalArgumentException("Not a valid 48-bit bluetooth address: " + _value);
+        }
+        return new BluetoothAddress(_value);
+    }
+
+    /**
+     * Parse an address in the format AA:BB:CC:DD:EE:FF.<br>
+     * Lower case characters and '_' or '-' as separator are accepted as well.
+     *
+     * @param _address address string
+     * @return address
+     * @throws IllegalArgumentException if given String is not a valid address
+     */
+    public static BluetoothAddress parse(String _address) {
+        BluetoothAddress address = parse(_address, 0);
+        if (address == null || _address.length() != 17) {
+            throw new IllegalArgumentException("Not a valid bluetooth address: " + _address);
+        }
+        return address;
+    }
+
+    /**
+     * Extract the address from a bluez device object path (e.g. /org/bluez/hci0/dev_AA_BB_CC_DD_EE_FF).<br>
+     * Paths of GATT objects below a device are supported as well.
+     *
+     * @param _dbusPath DBus object path
+     * @return address or null if path does not contain a device address
+     */
+    public static BluetoothAddress fromDbusPath(String _dbusPath) {
+        if (_dbusPath == null) {
+            return null;
+        }
+        int idx = _dbusPath.indexOf("/" + DEVICE_PATH_PREFIX);
+        if (idx < 0) {
+            return null;
+        }
+        int start = idx + 1 + DEVICE_PATH_PREFIX.length();
+        int end = start + 17;
+        if (end > _dbusPath.length() || end < _dbusPath.length() && _dbusPath.charAt(end) != '/') {
+            return null;
+        }
+        return parse(_dbusPath, start);
+    }
+
+    private static BluetoothAddress parse(String _str, int _offset) {
+        if (_str == null || _str.length() < _offset + 17) {
+            return null;
+        }
+        long result = 0;
+        for (int i = 0; i < 6; i++) {
+            int pos = _offset + i * 3;
+            if (i > 0) {
+                char sep = _str.charAt(pos - 1);
+                if (sep != ':' && sep != '_' && sep != '-') {
+                    return null;
+                }
+            }
+            int high = Character.digit(_str.charAt(pos), 16);
+            int low = Character.digit(_str.charAt(pos + 1), 16);
+            if (high < 0 || low < 0) {
+                return null;
+            }
+            result = result << 8 | high << 4 | low;
+        }
+        return new BluetoothAddress(result);
+    }
+
+    /**
+     * The 48-bit address value.
+     * @return long
+     */
+    public long toLong() {
+        return value;
+    }
+
+    /**
+     * Object path element used by bluez for a device with this address (e.g. dev_AA_BB_CC_DD_EE_FF).
+     * @return String
+     */
+    public String toDbusPathElement() {
+        return DEVICE_PATH_PREFIX + format('_');
+    }
+
+    private String format(char _separator) {
+        char[] chars = new char[17];
+        for (int i = 0; i < 6; i++) {
+            int b = (int) (value >>> (40 - i * 8)) & 0xFF;
+            int pos = i * 3;
+            chars[pos] = HEX_CHARS[b >>> 4];
+            chars[pos + 1] = HEX_CHARS[b & 0x0F];
+            if (i < 5) {
+                chars[pos + 2] = _separator;
+            }
+        }
+        return new String(chars);
+    }
+
+    @Override
+    public int compareTo(BluetoothAddress _o) {
+        return Long.compare(value, _o.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(value);
+    }
+
+    @Override
+    public boolean equals(Object _obj) {
+        return this == _obj || _obj instanceof BluetoothAddress && ((BluetoothAddress) _obj).value == value;
+    }
+
+    /**
+     * Address in the format AA:BB:CC:DD:EE:FF.
+     */
+    @Override
+    public String toString() {
+        return format(':');
+    }
+}
@@ -0,0 +1,526 @@
+package com.github.hypfvieh.bluetooth.wrapper;
+
+import com.github.hypfvieh.DbusSignalDispatcher;
+import org.bluez.Device1;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.interfaces.DBusSigHandler;
+import org.freedesktop.dbus.interfaces.Properties.PropertiesChanged;
+import org.freedesktop.dbus.types.Variant;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Limits the number of devices connected through one {@link BluetoothAdapter}.<br>
+ * <br>
+ * Controllers only support a limited number of simultaneous (LE) connections. Connections are requested
+ * using {@link #acquire(BluetoothDevice)}, which returns a {@link Lease} as soon as the device is connected.
+ * At most maxConnections devices are connected (or connecting) at the same time, further requests are queued
+ * in request order. A request waiting longer than the connect timeout fails with a {@link TimeoutException}.<br>
+ * <br>
+ * Connections stay open after all leases have been closed. If a request is waiting for a free connection,
+ * the connection idle for the longest time is disconnected to make room. The waiting request is connected
+ * after the disconnect has finished, so the controller is never asked to handle more connections than allowed.
+ * The Connected property of every managed device is watched, devices disconnecting on their own free their
+ * slot and invalidate their leases.
+ *
+ * @see BluetoothAdapter#getConnectionManager()
+ * @author hypfvieh
+ */
+public final class BluetoothConnectionManager {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final BluetoothAdapter adapter;
+
+    /** Managed connections by device object path, guarded by this. */
+    private final Map<String, Connection> connections = new HashMap<>();
+    /** Requests waiting for a free connection in request order, guarded by this. */
+    private final Deque<Request> waiting = new ArrayDeque<>();
+    /** Connections removed by this manager whose disconnect has not finished yet, they still occupy a slot. Guarded by this. */
+    private int disconnecting;
+
+    private volatile int maxConnections = 5;
+    private volatile int maxPending = 32;
+    private volatile long connectTimeout = 30_000;
+
+    BluetoothConnectionManager(BluetoothAdapter _adapter) {
+        adapter = _adapter;
+    }
+
+    public BluetoothAdapter getAdapter() {
+        return adapter;
+    }
+
+    /**
+     * Maximum number of devices connected or connecting at the same time.
+     * @param _maxConnections maximum, at least 1
+     */
+    public void setMaxConnections(int _maxConnections) {
+        maxConnections = Math.max(1, _maxConnections);
+        // idle connections exceeding a lowered limit are closed, connections in use are kept until released
+        List<Connection> toDisconnect = new ArrayList<>();
+        synchronized (this) {
+            while (connections.size() + disconnecting > maxConnections) {
+                Connection idle = findIdle();
+                if (idle == null) {
+                    break;
+                }
+                removeForDisconnect(idle);
+                toDisconnect.add(idle);
+            }
+        }
+        for (Connection connection : toDisconnect) {
+            logger.debug("Disconnecting idle device {}, connection limit was lowered", connection.device.getDbusPath());
+            disconnectSlot(connection);
+        }
+        drain();
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * Maximum number of requests waiting for a connection, further requests are rejected.
+     * @param _maxPending maximum, at least 1
+     */
+    public void setMaxPending(int _maxPending) {
+        maxPending = Math.max(1, _maxPending);
+    }
+
+    public int getMaxPending() {
+        return maxPending;
+    }
+
+    /**
+     * Maximum time in milliseconds a request may take (waiting time and connecting).
+     * @param _connectTimeout timeout, 0 or less to wait forever
+     */
+    public void setConnectTimeout(long _connectTimeout) {
+        connectTimeout = _connectTimeout;
+    }
+
+    public long getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * Number of devices connected or connecting through this manager.
+     * @return count
+     */
+    public synchronized int getConnectionCount() {
+        return connections.size();
+    }
+
+    /**
+     * Number of requests waiting for a free connection or for a device which is still connecting.
+     * @return count
+     */
+    public synchronized int getPendingCount() {
+        int count = waiting.size();
+        for (Connection connection : connections.values()) {
+            if (!connection.connected) {
+                count += connection.waiters.size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Check if the given device is connected through this manager.
+     * @param _device device
+     * @return true if connected
+     */
+    public synchronized boolean isConnected(BluetoothDevice _device) {
+        Connection connection = connections.get(_device.getDbusPath());
+        return connection != null && connection.connected;
+    }
+
+    /**
+     * Request a connection to the given device.<br>
+     * If the device is already connected, the returned future is completed immediately.
+     * The lease should be closed as soon as the connection is no longer required,
+     * so the connection may be reused for other devices.
+     *
+     * @param _device device to connect, has to belong to the adapter of this manager
+     * @return future providing the lease, fails with {@link TimeoutException} if the device could not be connected
+     *      in time, with {@link RejectedExecutionException} if too many requests are waiting or with the exception
+     *      reported by bluez
+     */
+    public CompletableFuture<Lease> acquire(BluetoothDevice _device) {
+        Objects.requireNonNull(_device, "Device required");
+        if (!adapter.getDbusPath().equals(_device.getAdapter().getDbusPath())) {
+            throw new IllegalArgumentException("Device " + _device.getDbusPath() + " does not belong to adapter " + adapter.getDbusPath());
+        }
+
+        Request request = new Request(_device);
+        synchronized (this) {
+            Connection connection = connections.get(_device.getDbusPath());
+            if (connection != null && connection.connected) {
+                connection.leases++;
+                return CompletableFuture.completedFuture(new Lease(connection));
+            }
+            if (getPendingCount() >= maxPending) {
+                return CompletableFuture.failedFuture(new RejectedExecutionException("Too many pending connection requests"));
+            }
+            if (connection != null) {
+                connection.waiters.add(request);
+            } else {
+                waiting.add(request);
+            }
+        }
+
+        long timeout = connectTimeout;
+        if (timeout > 0) {
+            request.future.orTimeout(timeout, TimeUnit.MILLISECONDS);
+        }
+        request.future.whenComplete((lease, ex) -> {
+            if (ex != null) {
+                abandon(request);
+            }
+        });
+        drain();
+        return request.future;
+    }
+
+    /**
+     * Disconnect the given device, all leases of the device become invalid.
+     * @param _device device
+     * @return future completed when the device was disconnected
+     */
+    public CompletableFuture<DeviceOperationResult> disconnect(BluetoothDevice _device) {
+        List<Request> requests = new ArrayList<>();
+        Connection connection;
+        synchronized (this) {
+            connection = connections.get(_device.getDbusPath());
+            if (connection != null) {
+                removeForDisconnect(connection);
+                requests.addAll(connection.waiters);
+                connection.waiters.clear();
+            }
+        }
+        fail(requests, new IllegalStateException("Device was disconnected"));
+        if (connection == null) {
+            return _device.disconnectAsync(0, TimeUnit.MILLISECONDS);
+        }
+        return disconnectSlot(connection);
+    }
+
+    /**
+     * Start connects for waiting requests as long as connection slots are available.
+     * Requests are served in order, a request which can not be served blocks all following requests.
+     */
+    private void drain() {
+        List<Connection> toConnect = new ArrayList<>();
+        List<Connection> toDisconnect = new ArrayList<>();
+        List<Lease> leases = new ArrayList<>();
+        List<Request> served = new ArrayList<>();
+
+        synchronized (this) {
+            while (!waiting.isEmpty()) {
+                Request request = waiting.peek();
+                if (request.future.isDone()) {
+                    waiting.poll();
+                    continue;
+                }
+                Connection existing = connections.get(request.device.getDbusPath());
+                if (existing != null) {
+                    waiting.poll();
+                    if (existing.connected) {
+                        existing.leases++;
+                        leases.add(new Lease(existing));
+                        served.add(request);
+                    } else {
+                        existing.waiters.add(request);
+                    }
+                    continue;
+                }
+                if (connections.size() + disconnecting >= maxConnections) {
+                    // free one slot at a time, the request is served when the disconnect has finished
+                    Connection idle = disconnecting == 0 ? findIdle() : null;
+                    if (idle != null) {
+                        removeForDisconnect(idle);
+                        toDisconnect.add(idle);
+                    }
+                    break;
+                }
+                waiting.poll();
+                Connection connection = new Connection(request.device);
+                connection.waiters.add(request);
+                connections.put(request.device.getDbusPath(), connection);
+                toConnect.add(connection);
+            }
+        }
+
+        for (int i = 0; i < served.size(); i++) {
+            complete(served.get(i), leases.get(i));
+        }
+        for (Connection connection : toDisconnect) {
+            logger.debug("Disconnecting idle device {} to free connection slot", connection.device.getDbusPath());
+            disconnectSlot(connection);
+        }
+        for (Connection connection : toConnect) {
+            connect(connection);
+        }
+    }
+
+    /**
+     * Find the connected device without leases which was released first.
+     */
+    private Connection findIdle() {
+        Connection idle = null;
+        for (Connection connection : connections.values()) {
+            if (connection.connected && connection.leases == 0 && (idle == null || connection.lastUsed - idle.lastUsed < 0)) {
+                idle = connection;
+            }
+        }
+        return idle;
+    }
+
+    private void connect(Connection _connection) {
+        synchronized (this) {
+            if (connections.get(_connection.device.getDbusPath()) != _connection) {
+                // all requests were abandoned before the connect was started
+                return;
+            }
+            try {
+                DbusSignalDispatcher.getInstance(adapter.getDbusConnection())
+                    .addPropertiesChangedHandler(_connection.device.getDbusPath(), _connection.signalHandler);
+                _connection.handlerRegistered = true;
+            } catch (DBusException _ex) {
+                logger.warn("Unable to watch connection state of {}, own disconnects will not be detected", _connection.device.getDbusPath(), _ex);
+            }
+        }
+
+        // timeout is handled by the requests, an abandoned connect is aborted by abandon()
+        _connection.device.connectAsync(0, TimeUnit.MILLISECONDS).whenComplete((r, ex) -> {
+            if (ex == null) {
+                connected(_connection);
+            } else {
+                connectFailed(_connection, ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+            }
+        });
+    }
+
+    private void connected(Connection _connection) {
+        List<Request> requests;
+        List<Lease> leases = new ArrayList<>();
+        boolean abandoned;
+        synchronized (this) {
+            abandoned = connections.get(_connection.device.getDbusPath()) != _connection;
+            requests = new ArrayList<>(_connection.waiters);
+            _connection.waiters.clear();
+            if (!abandoned) {
+                _connection.connected = true;
+                _connection.lastUsed = System.nanoTime();
+                for (int i = 0; i < requests.size(); i++) {
+                    _connection.leases++;
+                    leases.add(new Lease(_connection));
+                }
+            }
+        }
+        if (abandoned) {
+            // all requests timed out or the device was removed while connecting
+            unregister(_connection);
+            disconnectDevice(_connection);
+            fail(requests, new IllegalStateException("Device was disconnected"));
+            drain();
+            return;
+        }
+        for (int i = 0; i < requests.size(); i++) {
+            complete(requests.get(i), leases.get(i));
+        }
+        drain();
+    }
+
+    private void connectFailed(Connection _connection, Throwable _cause) {
+        List<Request> requests;
+        synchronized (this) {
+            if (connections.get(_connection.device.getDbusPath()) == _connection) {
+                remove(_connection);
+            }
+            // the connection may have been abandoned already, the handler has to be removed in any case
+            unregister(_connection);
+            requests = new ArrayList<>(_connection.waiters);
+            _connection.waiters.clear();
+        }
+        logger.debug("Connecting {} failed", _connection.device.getDbusPath(), _cause);
+        fail(requests, _cause);
+        drain();
+    }
+
+    /**
+     * Called when a request failed or timed out.
+     * The request is removed and if it was the last request for a device still connecting, the connect is aborted.
+     */
+    private void abandon(Request _request) {
+        Connection abort = null;
+        synchronized (this) {
+            if (!waiting.remove(_request)) {
+                Connection connection = connections.get(_request.device.getDbusPath());
+                if (connection != null && connection.waiters.remove(_request) && !connection.connected && connection.waiters.isEmpty()) {
+                    removeForDisconnect(connection);
+                    abort = connection;
+                }
+            }
+        }
+        if (abort != null) {
+            logger.debug("Aborting connect of {}, no request is waiting anymore", abort.device.getDbusPath());
+            // bluez cancels a pending connect on Disconnect
+            disconnectSlot(abort);
+        }
+    }
+
+    private void release(Connection _connection) {
+        synchronized (this) {
+            _connection.leases--;
+            _connection.lastUsed = System.nanoTime();
+        }
+        drain();
+    }
+
+    private void handleSignal(Connection _connection, PropertiesChanged _signal) {
+        if (!Device1.class.getName().equals(_signal.getInterfaceName())) {
+            return;
+        }
+        Variant<?> value = _signal.getPropertiesChanged().get("Connected");
+        if (value == null || !Boolean.FALSE.equals(value.getValue())) {
+            return;
+        }
+        synchronized (this) {
+            // while connecting the result of the Connect call decides
+            if (!_connection.connected || connections.get(_connection.device.getDbusPath()) != _connection) {
+                return;
+            }
+            remove(_connection);
+        }
+        logger.debug("Device {} disconnected", _connection.device.getDbusPath());
+        drain();
+    }
+
+    /**
+     * Remove the connection from the managed connections, has to be called while holding the lock.
+     */
+    private void remove(Connection _connection) {
+        connections.remove(_connection.device.getDbusPath(), _connection);
+        _connection.connected = false;
+        _connection.valid = false;
+        unregister(_connection);
+    }
+
+    /**
+     * Remove the connection and keep its slot occupied until {@link #disconnectSlot(Connection)} has finished,
+     * has to be called while holding the lock.
+     */
+    private void removeForDisconnect(Connection _connection) {
+        remove(_connection);
+        disconnecting++;
+    }
+
+    /**
+     * Disconnect a connection removed by {@link #removeForDisconnect(Connection)} and free its slot afterwards.
+     */
+    private CompletableFuture<DeviceOperationResult> disconnectSlot(Connection _connection) {
+        return disconnectDevice(_connection).whenComplete((r, ex) -> {
+            synchronized (this) {
+                disconnecting--;
+            }
+            drain();
+        });
+    }
+
+    private synchronized void unregister(Connection _connection) {
+        if (_connection.handlerRegistered) {
+            _connection.handlerRegistered = false;
+            DbusSignalDispatcher.getInstance(adapter.getDbusConnection())
+                .removePropertiesChangedHandler(_connection.device.getDbusPath(), _connection.signalHandler);
+        }
+    }
+
+    private static void complete(Request _request, Lease _lease) {
+        if (!_request.future.complete(_lease)) {
+            // request timed out concurrently
+            _lease.close();
+        }
+    }
+
+    private static void fail(List<Request> _requests, Throwable _cause) {
+        for (Request request : _requests) {
+            request.future.completeExceptionally(_cause);
+        }
+    }
+
+    private static CompletableFuture<DeviceOperationResult> disconnectDevice(Connection _connection) {
+        return _connection.device.disconnectAsync(0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Connection of one device, all fields are guarded by the manager.
+     */
+    private final class Connection {
+        private final BluetoothDevice device;
+        private final List<Request> waiters = new ArrayList<>();
+        private final DBusSigHandler<PropertiesChanged> signalHandler = s -> handleSignal(this, s);
+        private boolean connected;
+        private boolean handlerRegistered;
+        private volatile boolean valid = true;
+        private int leases;
+        private long lastUsed;
+
+        Connection(BluetoothDevice _device) {
+            device = _device;
+        }
+    }
+
+    private static final class Request {
+        private final BluetoothDevice device;
+        private final CompletableFuture<Lease> future = new CompletableFuture<>();
+
+        Request(BluetoothDevice _device) {
+            device = _device;
+        }
+    }
+
+    /**
+     * Usage of a managed connection, has to be closed when the connection is no longer required.
+     */
+    public final class Lease implements Closeable {
+        private final Connection connection;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Lease(Connection _connection) {
+            connection = _connection;
+        }
+
+        public BluetoothDevice getDevice() {
+            return connection.device;
+        }
+
+        /**
+         * Returns false if the lease was closed or the device has been disconnected.
+         * @return true if valid
+         */
+        public boolean isValid() {
+            return !closed.get() && connection.valid;
+        }
+
+        /**
+         * Release the connection, it stays connected until the slot is required for another device.
+         */
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                release(connection);
+            }
+        }
+    }
+}
@@ -9,10 +9,15 @@ import org.freedesktop.dbus.exceptions.DBusExecutionException;
 import org.freedesktop.dbus.interfaces.DBusInterface;
 import org.freedesktop.dbus.types.UInt16;
 import org.freedesktop.dbus.types.UInt32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.*;
 import java.util.Map.Entry;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 /**
  * Wrapper class which represents a remote bluetooth device.
@@ -21,16 +26,26 @@ import java.util.concurrent.atomic.AtomicBoolean;
  */
 public class BluetoothDevice extends AbstractBluetoothObject {
 
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
     private final Device1 rawdevice;
     private final BluetoothAdapter adapter;
+    /** Address encoded in the DBus object path, null if path does not follow bluez naming */
+    private final BluetoothAddress pathAddress;
+
+    private final ChildObjectMap<BluetoothGattService> servicesByUuid = new ChildObjectMap<>(this, GattService1.class, this::invalidateCharacteristicIndex);
 
-    private final AtomicBoolean servicesDiscovered = new AtomicBoolean();
-    private final Map<String, BluetoothGattService> servicesByUuid = new LinkedHashMap<>();
+    /** All characteristics of this device by service and characteristic UUID, null if it has to be rebuilt */
+    private volatile Map<CharacteristicKey, BluetoothGattCharacteristic> characteristicIndex;
+    private final AtomicInteger characteristicIndexVersion = new AtomicInteger();
+
+    private final GattOperationQueue gattOperationQueue = new GattOperationQueue(this);
 
     public BluetoothDevice(Device1 _device, BluetoothAdapter _adapter, String _dbusPath, DBusConnection _dbusConnection) {
         super(BluetoothDeviceType.DEVICE, _dbusConnection, _dbusPath);
         rawdevice = _device;
         adapter = _adapter;
+        pathAddress = BluetoothAddress.fromDbusPath(_dbusPath);
     }
 
     /**
@@ -41,6 +56,15 @@ public class BluetoothDevice extends AbstractBluetoothObject {
         return Device1.class;
     }
 
+    /**
+     * Read all properties of this device using a single GetAll call.
+     * @return snapshot, never null
+     */
+    @Override
+    public DeviceSnapshot snapshot() {
+        return new DeviceSnapshot(getDbusPath(), getInterfaceClass().getName(), getAllProperties());
+    }
+
     /**
      * Return the list of available {@link BluetoothGattService}s.<br>
      * Will start a query if no list was gathered before.<br>
@@ -48,26 +72,87 @@ public class BluetoothDevice extends AbstractBluetoothObject {
      * @return List, maybe empty but never null
      */
     public List<BluetoothGattService> getGattServices() {
-        if (!servicesDiscovered.get()) {
-            refreshGattServices();
-        }
+        ensureGattServicesDiscovered();
+        return servicesByUuid.values();
+    }
 
-        return new ArrayList<>(servicesByUuid.values());
+    private void ensureGattServicesDiscovered() {
+        servicesByUuid.ensureLoaded(this::refreshGattServices);
     }
 
     /**
-     * Re-queries the list of available {@link BluetoothGattService}'s on this device.
+     * Re-queries the list of available {@link BluetoothGattService}'s on this device.<br>
+     * The previous list stays available for other threads until the query has finished.
      */
     public void refreshGattServices() {
-        servicesDiscovered.set(true);
-        servicesByUuid.clear();
+        long generation = servicesByUuid.getGeneration();
+        setGattServices(discoverGattServices(), generation);
+    }
+
+    /**
+     * Generation of the service list, has to be read before {@link #discoverGattServices()} is called.
+     * @return generation
+     */
+    long getGattServicesGeneration() {
+        return servicesByUuid.getGeneration();
+    }
+
+    /**
+     * Query the {@link BluetoothGattService}s of this device without changing the current list.
+     * @return services by UUID
+     */
+    Map<BluetoothUuid, BluetoothGattService> discoverGattServices() {
+        Map<BluetoothUuid, BluetoothGattService> found = new LinkedHashMap<>();
 
         Set<String> findNodes = DbusHelper.findNodes(getDbusConnection(), getDbusPath());
         Map<String, GattService1> remoteObjects = getRemoteObjects(findNodes, getDbusPath(), GattService1.class);
         for (Entry<String, GattService1> entry : remoteObjects.entrySet()) {
             BluetoothGattService bluetoothGattService = new BluetoothGattService(entry.getValue(), this, entry.getKey(), getDbusConnection());
-            servicesByUuid.put(bluetoothGattService.getUuid(), bluetoothGattService);
+            if (isPropertyCacheEnabled()) {
+                bluetoothGattService.enablePropertyCache(getPropertyCacheMaxAge());
+            }
+            BluetoothUuid uuid = BluetoothUuid.tryParse(bluetoothGattService.getUuid());
+            if (uuid == null) {
+                logger.debug("Ignoring GATT service {} with invalid UUID {}", entry.getKey(), bluetoothGattService.getUuid());
+                bluetoothGattService.disablePropertyCache();
+                continue;
+            }
+            found.put(uuid, bluetoothGattService);
         }
+        return found;
+    }
+
+    /**
+     * Replace all {@link BluetoothGattService}s of this device (e.g. with services restored from a cache).
+     * @param _services services by UUID
+     * @param _generation generation read by {@link #getGattServicesGeneration()} before the services were queried
+     */
+    void setGattServices(Map<BluetoothUuid, BluetoothGattService> _services, long _generation) {
+        servicesByUuid.replaceAll(_services, _generation);
+    }
+
+    /**
+     * Add a {@link BluetoothGattService} published by bluez.
+     * @param _uuid UUID of the service
+     * @param _service service to add
+     */
+    void addGattService(BluetoothUuid _uuid, BluetoothGattService _service) {
+        servicesByUuid.put(_uuid, _service);
+    }
+
+    /**
+     * Mark the current services as complete, so they are not queried again.
+     */
+    void markGattServicesLoaded() {
+        servicesByUuid.markLoaded();
+    }
+
+    /**
+     * Remove a {@link BluetoothGattService} which is no longer available.
+     * @param _service service to remove
+     */
+    void removeGattService(BluetoothGattService _service) {
+        servicesByUuid.remove(_service);
     }
 
     /**
@@ -76,12 +161,89 @@ public class BluetoothDevice extends AbstractBluetoothObject {
      * @return {@link BluetoothGattService}, maybe null if not found
      */
     public BluetoothGattService getGattServiceByUuid(String _uuid) {
-        if (!servicesDiscovered.get()) {
-            refreshGattServices();
-        }
+        ensureGattServicesDiscovered();
         return servicesByUuid.get(_uuid);
     }
 
+    /**
+     * Get the given {@link BluetoothGattService} instance by UUID.
+     * @param _uuid uuid
+     * @return {@link BluetoothGattService}, maybe null if not found
+     */
+    public BluetoothGattService getGattServiceByUuid(BluetoothUuid _uuid) {
+        ensureGattServicesDiscovered();
+        return servicesByUuid.get(_uuid);
+    }
+
+    /**
+     * Get a characteristic of this device using a device wide index (one hash lookup).<br>
+     * The index is built on first use (discovering all services and characteristics if needed)
+     * and rebuilt whenever services or characteristics of this device change.
+     *
+     * @param _serviceUuid UUID of the service
+     * @param _characteristicUuid UUID of the characteristic
+     * @return {@link BluetoothGattCharacteristic}, maybe null if not found
+     */
+    public BluetoothGattCharacteristic getGattCharacteristic(BluetoothUuid _serviceUuid, BluetoothUuid _characteristicUuid) {
+        if (_serviceUuid == null || _characteristicUuid == null) {
+            return null;
+        }
+        Map<CharacteristicKey, BluetoothGattCharacteristic> index = characteristicIndex;
+        if (index == null || !servicesByUuid.isLoaded()) {
+            index = buildCharacteristicIndex();
+        }
+        return index.get(new CharacteristicKey(_serviceUuid, _characteristicUuid));
+    }
+
+    /**
+     * Get a characteristic of this device using a device wide index.
+     * @param _serviceUuid UUID of the service
+     * @param _characteristicUuid UUID of the characteristic
+     * @return {@link BluetoothGattCharacteristic}, maybe null if not found or any UUID is invalid
+     * @see #getGattCharacteristic(BluetoothUuid, BluetoothUuid)
+     */
+    public BluetoothGattCharacteristic getGattCharacteristic(String _serviceUuid, String _characteristicUuid) {
+        return getGattCharacteristic(BluetoothUuid.tryParse(_serviceUuid), BluetoothUuid.tryParse(_characteristicUuid));
+    }
+
+    private Map<CharacteristicKey, BluetoothGattCharacteristic> buildCharacteristicIndex() {
+        int version = characteristicIndexVersion.get();
+        ensureGattServicesDiscovered();
+        Map<CharacteristicKey, BluetoothGattCharacteristic> index = new HashMap<>();
+        for (Entry<BluetoothUuid, BluetoothGattService> service : servicesByUuid.asMap().entrySet()) {
+            if (service.getKey() == null) {
+                continue;
+            }
+            for (Entry<BluetoothUuid, BluetoothGattCharacteristic> characteristic : service.getValue().getGattCharacteristicMap().entrySet()) {
+                if (characteristic.getKey() == null) {
+                    continue;
+                }
+                index.put(new CharacteristicKey(service.getKey(), characteristic.getKey()), characteristic.getValue());
+            }
+        }
+        if (characteristicIndexVersion.get() == version) {
+            characteristicIndex = index;
+        }
+        return index;
+    }
+
+    /**
+     * Called when services or characteristics of this device have changed.
+     */
+    void invalidateCharacteristicIndex() {
+        characteristicIndexVersion.incrementAndGet();
+        characteristicIndex = null;
+    }
+
+    /**
+     * Get the queue which serializes the GATT operations of this device
+     * and retries operations rejected by bluez with InProgress or NotReady.
+     * @return queue, never null
+     */
+    public GattOperationQueue getGattOperationQueue() {
+        return gattOperationQueue;
+    }
+
     /**
      * Get {@link BluetoothAdapter} object where this {@link BluetoothDevice} object belongs to.
      * @return adapter
@@ -169,11 +331,7 @@ public class BluetoothDevice extends AbstractBluetoothObject {
      * @return byte array maybe null
      */
     public byte[] getAdvertisingFlags() {
-        List<?> typed = getTyped("AdvertisingFlags", ArrayList.class);
-        if (typed != null) {
-            return byteListToByteArray(typed);
-        }
-        return null;
+        return getBytes("AdvertisingFlags");
     }
 
     /**
@@ -289,13 +447,34 @@ public class BluetoothDevice extends AbstractBluetoothObject {
     }
 
     /**
-     * Returns the remote devices bluetooth (MAC) address.
+     * Returns the remote devices bluetooth (MAC) address.<br>
+     * The address is taken from the DBus object path, so usually no DBus call is required.
      * @return mac address, maybe null
      */
     public String getAddress() {
+        if (pathAddress != null) {
+            return pathAddress.toString();
+        }
         return getTyped("Address", String.class);
     }
 
+    /**
+     * Returns the remote devices bluetooth (MAC) address as {@link BluetoothAddress}.<br>
+     * The address is taken from the DBus object path, so usually no DBus call is required.
+     * @return address, maybe null
+     */
+    public BluetoothAddress getBluetoothAddress() {
+        if (pathAddress != null) {
+            return pathAddress;
+        }
+        String address = getTyped("Address", String.class);
+        try {
+            return address != null ? BluetoothAddress.parse(address) : null;
+        } catch (IllegalArgumentException _ex) {
+            return null;
+        }
+    }
+
     /**
      * <b>From bluez Documentation:</b>
      * <p>
@@ -512,10 +691,137 @@ public class BluetoothDevice extends AbstractBluetoothObject {
         }
     }
 
+    /**
+     * Asynchronous version of {@link #connect()}.<br>
+     * No thread is blocked while connecting. If the timeout elapses or the returned future is cancelled
+     * before bluez replied, the connect is aborted by calling Disconnect.
+     *
+     * @param _timeout timeout, 0 or less to wait for the reply of bluez
+     * @param _unit unit of timeout
+     * @return future providing {@link DeviceOperationResult#ALREADY_COMPLETED} if the device was already connected,
+     *      fails with a {@link java.util.concurrent.TimeoutException} on timeout or the exception reported by bluez
+     */
+    public CompletableFuture<DeviceOperationResult> connectAsync(long _timeout, TimeUnit _unit) {
+        return callWithTimeout(callAsync("Connect"), BluezAlreadyConnectedException.class, _timeout, _unit,
+            () -> callAsync("Disconnect"));
+    }
+
+    /**
+     * Asynchronous version of {@link #disconnect()}.
+     *
+     * @param _timeout timeout, 0 or less to wait for the reply of bluez
+     * @param _unit unit of timeout
+     * @return future providing {@link DeviceOperationResult#ALREADY_COMPLETED} if the device was not connected,
+     *      fails with a {@link java.util.concurrent.TimeoutException} on timeout or the exception reported by bluez
+     */
+    public CompletableFuture<DeviceOperationResult> disconnectAsync(long _timeout, TimeUnit _unit) {
+        return callWithTimeout(callAsync("Disconnect"), BluezNotConnectedException.class, _timeout, _unit, null);
+    }
+
+    /**
+     * Asynchronous version of {@link #connectProfile(String)}.<br>
+     * If the timeout elapses or the returned future is cancelled before bluez replied,
+     * the profile is disconnected by calling DisconnectProfile.
+     *
+     * @param _uuid profile uuid
+     * @param _timeout timeout, 0 or less to wait for the reply of bluez
+     * @param _unit unit of timeout
+     * @return future providing {@link DeviceOperationResult#ALREADY_COMPLETED} if the profile was already connected,
+     *      fails with a {@link java.util.concurrent.TimeoutException} on timeout or the exception reported by bluez
+     */
+    public CompletableFuture<DeviceOperationResult> connectProfileAsync(String _uuid, long _timeout, TimeUnit _unit) {
+        return callWithTimeout(callAsync("ConnectProfile", _uuid), BluezAlreadyConnectedException.class, _timeout, _unit,
+            () -> callAsync("DisconnectProfile", _uuid));
+    }
+
+    /**
+     * Asynchronous version of {@link #pair()}.<br>
+     * If the timeout elapses or the returned future is cancelled before bluez replied,
+     * the pairing is aborted by calling CancelPairing.
+     *
+     * @param _timeout timeout, 0 or less to wait for the reply of bluez
+     * @param _unit unit of timeout
+     * @return future providing {@link DeviceOperationResult#ALREADY_COMPLETED} if the device was already paired,
+     *      fails with a {@link java.util.concurrent.TimeoutException} on timeout or the exception reported by bluez
+     */
+    public CompletableFuture<DeviceOperationResult> pairAsync(long _timeout, TimeUnit _unit) {
+        return callWithTimeout(callAsync("Pair"), BluezAlreadyExistsException.class, _timeout, _unit,
+            () -> callAsync("CancelPairing"));
+    }
+
+    private CompletableFuture<Void> callAsync(String _method, String... _args) {
+        Class<?>[] types = new Class<?>[_args.length];
+        Arrays.fill(types, String.class);
+        return DbusHelper.callAsync(getDbusConnection(), rawdevice, _method, types, (Object[]) _args);
+    }
+
+    /**
+     * Wrap a running call, applying the timeout and calling the given abort operation if the result
+     * is completed (timeout or cancel) before the call has returned.
+     */
+    private CompletableFuture<DeviceOperationResult> callWithTimeout(CompletableFuture<Void> _call, Class<? extends Exception> _alreadyDone,
+            long _timeout, TimeUnit _unit, Supplier<CompletableFuture<Void>> _abort) {
+
+        CompletableFuture<DeviceOperationResult> result = new CompletableFuture<>();
+        _call.whenComplete((v, ex) -> {
+            if (ex == null) {
+                result.complete(DeviceOperationResult.COMPLETED);
+            } else if (_alreadyDone.isInstance(ex)) {
+                result.complete(DeviceOperationResult.ALREADY_COMPLETED);
+            } else {
+                result.completeExceptionally(ex);
+            }
+        });
+        if (_timeout > 0) {
+            result.orTimeout(_timeout, _unit);
+        }
+        if (_abort != null) {
+            result.whenComplete((r, ex) -> {
+                if (ex != null && !_call.isDone()) {
+                    logger.debug("Aborting operation on {}", getDbusPath(), ex);
+                    _abort.get().whenComplete((v, abortEx) -> {
+                        if (abortEx != null) {
+                            logger.debug("Unable to abort operation on {}", getDbusPath(), abortEx);
+                        }
+                    });
+                }
+            });
+        }
+        return result;
+    }
+
     @Override
     public String toString() {
         return getClass().getSimpleName() + " [device=" + rawdevice + ", adapter=" + adapter.getDbusPath() + ", getBluetoothType()=" + getBluetoothType().name() + ", getDbusPath()=" + getDbusPath() + "]";
     }
 
+    /**
+     * Key of the device wide characteristic index.
+     */
+    private static final class CharacteristicKey {
+        private final BluetoothUuid service;
+        private final BluetoothUuid characteristic;
 
+        CharacteristicKey(BluetoothUuid _service, BluetoothUuid _characteristic) {
+            service = _service;
+            characteristic = _characteristic;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * service.hashCode() + characteristic.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object _obj) {
+            if (this == _obj) {
+                return true;
+            }
+            if (!(_obj instanceof CharacteristicKey)) {
+                return false;
+            }
+            CharacteristicKey other = (CharacteristicKey) _obj;
+            return service.equals(other.service) && characteristic.equals(other.characteristic);
+        }
+    }
 }
@@ -1,14 +1,25 @@
 package com.github.hypfvieh.bluetooth.wrapper;
 
 import com.github.hypfvieh.DbusHelper;
+import com.github.hypfvieh.DbusSignalDispatcher;
 import org.bluez.GattCharacteristic1;
 import org.bluez.GattDescriptor1;
 import org.bluez.exceptions.*;
 import org.freedesktop.dbus.connections.impl.DBusConnection;
+import org.freedesktop.dbus.exceptions.DBusException;
 import org.freedesktop.dbus.interfaces.DBusInterface;
+import org.freedesktop.dbus.interfaces.DBusSigHandler;
+import org.freedesktop.dbus.interfaces.Properties.PropertiesChanged;
+import org.freedesktop.dbus.types.UInt16;
+import org.freedesktop.dbus.types.Variant;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Wrapper class which represents a GATT characteristic on a remote device.
@@ -18,10 +29,25 @@ import java.util.Map.Entry;
  */
 public class BluetoothGattCharacteristic extends AbstractBluetoothObject {
 
+    /** Size of the ATT header (opcode and handle) preceding every value */
+    static final int ATT_HEADER_SIZE = 3;
+    /**
+     * Payload size assumed if bluez does not report an MTU: the default ATT MTU of 23 bytes minus the header.<br>
+     * This is the conservative assumption, every device accepts writes of this size.
+     */
+    static final int DEFAULT_ATT_PAYLOAD_SIZE = 20;
+    /** Maximum length of an attribute value, receive buffers of this size never truncate a notification */
+    static final int MAX_ATT_VALUE_SIZE = 512;
+
     private final GattCharacteristic1 gattCharacteristic;
     private final BluetoothGattService gattService;
 
-    private final Map<String, BluetoothGattDescriptor> descriptorByUuid = new LinkedHashMap<>();
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final ChildObjectMap<BluetoothGattDescriptor> descriptorByUuid = new ChildObjectMap<>(this, GattDescriptor1.class, null);
+
+    private final List<GattNotificationHandler> notificationListeners = new CopyOnWriteArrayList<>();
+    private final DBusSigHandler<PropertiesChanged> notificationSignalHandler = this::dispatchNotification;
 
     public BluetoothGattCharacteristic(GattCharacteristic1 _gattCharacteristic, BluetoothGattService _service, String _dbusPath, DBusConnection _dbusConnection) {
         super(BluetoothDeviceType.GATT_CHARACTERISTIC, _dbusConnection, _dbusPath);
@@ -42,26 +68,84 @@ public class BluetoothGattCharacteristic extends AbstractBluetoothObject {
      * Re-queries the GattCharacteristics from the device.
      */
     public void refreshGattDescriptors() {
-        descriptorByUuid.clear();
+        long generation = descriptorByUuid.getGeneration();
+        setGattDescriptors(discoverGattDescriptors(), generation);
+    }
+
+    /**
+     * Generation of the descriptor list, has to be read before {@link #discoverGattDescriptors()} is called.
+     * @return generation
+     */
+    long getGattDescriptorsGeneration() {
+        return descriptorByUuid.getGeneration();
+    }
+
+    /**
+     * Query the {@link BluetoothGattDescriptor}s of this characteristic without changing the current list.
+     * @return descriptors by UUID
+     */
+    Map<BluetoothUuid, BluetoothGattDescriptor> discoverGattDescriptors() {
+        Map<BluetoothUuid, BluetoothGattDescriptor> found = new LinkedHashMap<>();
 
         Set<String> findNodes = DbusHelper.findNodes(getDbusConnection(), getDbusPath());
         Map<String, GattDescriptor1> remoteObjects = getRemoteObjects(findNodes, getDbusPath(), GattDescriptor1.class);
         for (Entry<String, GattDescriptor1> entry : remoteObjects.entrySet()) {
             BluetoothGattDescriptor btDescriptor = new BluetoothGattDescriptor(entry.getValue(), this, entry.getKey(), getDbusConnection());
-            descriptorByUuid.put(btDescriptor.getUuid(), btDescriptor);
+            if (isPropertyCacheEnabled()) {
+                btDescriptor.enablePropertyCache(getPropertyCacheMaxAge());
+            }
+            BluetoothUuid uuid = BluetoothUuid.tryParse(btDescriptor.getUuid());
+            if (uuid == null) {
+                logger.debug("Ignoring GATT descriptor {} with invalid UUID {}", entry.getKey(), btDescriptor.getUuid());
+                btDescriptor.disablePropertyCache();
+                continue;
+            }
+            found.put(uuid, btDescriptor);
         }
+        return found;
+    }
+
+    /**
+     * Replace all {@link BluetoothGattDescriptor}s of this characteristic (e.g. with descriptors restored from a cache).
+     * @param _descriptors descriptors by UUID
+     * @param _generation generation read by {@link #getGattDescriptorsGeneration()} before the descriptors were queried
+     */
+    void setGattDescriptors(Map<BluetoothUuid, BluetoothGattDescriptor> _descriptors, long _generation) {
+        descriptorByUuid.replaceAll(_descriptors, _generation);
+    }
+
+    /**
+     * Add a {@link BluetoothGattDescriptor} published by bluez.
+     * @param _uuid UUID of the descriptor
+     * @param _descriptor descriptor to add
+     */
+    void addGattDescriptor(BluetoothUuid _uuid, BluetoothGattDescriptor _descriptor) {
+        descriptorByUuid.put(_uuid, _descriptor);
+    }
+
+    /**
+     * Mark the current descriptors as complete, so they are not queried again.
+     */
+    void markGattDescriptorsLoaded() {
+        descriptorByUuid.markLoaded();
+    }
+
+    /**
+     * Remove a {@link BluetoothGattDescriptor} which is no longer available.
+     * @param _descriptor descriptor to remove
+     */
+    void removeGattDescriptor(BluetoothGattDescriptor _descriptor) {
+        descriptorByUuid.remove(_descriptor);
     }
 
     /**
      * Get the currently available GATT descriptors.<br>
-     * Will issue a query if {@link #refreshGattDescriptors()} wasn't called before.
+     * Will issue a query if the descriptors were not loaded before or bluez added descriptors since.
      * @return List, maybe empty but never null
      */
     public List<BluetoothGattDescriptor> getGattDescriptors() {
-        if (descriptorByUuid.isEmpty()) {
-            refreshGattDescriptors();
-        }
-        return new ArrayList<>(descriptorByUuid.values());
+        descriptorByUuid.ensureLoaded(this::refreshGattDescriptors);
+        return descriptorByUuid.values();
     }
 
     /**
@@ -70,9 +154,17 @@ public class BluetoothGattCharacteristic extends AbstractBluetoothObject {
      * @return maybe null if not found
      */
     public BluetoothGattDescriptor getGattDescriptorByUuid(String _uuid) {
-        if (descriptorByUuid.isEmpty()) {
-            refreshGattDescriptors();
-        }
+        descriptorByUuid.ensureLoaded(this::refreshGattDescriptors);
+        return descriptorByUuid.get(_uuid);
+    }
+
+    /**
+     * Return the {@link BluetoothGattDescriptor} object for the given UUID.
+     * @param _uuid uuid
+     * @return maybe null if not found
+     */
+    public BluetoothGattDescriptor getGattDescriptorByUuid(BluetoothUuid _uuid) {
+        descriptorByUuid.ensureLoaded(this::refreshGattDescriptors);
         return descriptorByUuid.get(_uuid);
     }
 
@@ -116,6 +208,90 @@ public class BluetoothGattCharacteristic extends AbstractBluetoothObject {
         return gattCharacteristic.ReadValue(optionsToVariantMap(_options));
     }
 
+    /**
+     * Asynchronous version of {@link #writeValue(byte[], Map)}.<br>
+     * The returned future is completed by a DBus worker thread, errors are reported
+     * using the exceptions of package org.bluez.exceptions.
+     *
+     * @param _value value to write
+     * @param _options options to use
+     * @return future completed when the value was written
+     */
+    public CompletableFuture<Void> writeValueAsync(byte[] _value, Map<String, Object> _options) {
+        return DbusHelper.callAsync(getDbusConnection(), gattCharacteristic, "WriteValue", new Class<?>[] {byte[].class, Map.class},
+            _value, optionsToVariantMap(_options));
+    }
+
+    /**
+     * Asynchronous version of {@link #readValue(Map)}.<br>
+     * The returned future is completed by a DBus worker thread, errors are reported
+     * using the exceptions of package org.bluez.exceptions.
+     *
+     * @param _options options to use
+     * @return future providing the read value
+     */
+    public CompletableFuture<byte[]> readValueAsync(Map<String, Object> _options) {
+        return DbusHelper.callAsync(getDbusConnection(), gattCharacteristic, "ReadValue", new Class<?>[] {Map.class},
+            optionsToVariantMap(_options));
+    }
+
+    /**
+     * Write value to the GATT characteristic register using prebuilt options.<br>
+     * The options are passed as is, no maps or variants are created by this call.
+     *
+     * @param _value value to write
+     * @param _options options to use
+     * @throws BluezFailedException on failure if operation failed
+     * @throws BluezInProgressException when operation already in progress
+     * @throws BluezNotPermittedException if operation is not permitted
+     * @throws BluezNotAuthorizedException if not authorized
+     * @throws BluezNotSupportedException if not supported
+     * @throws BluezInvalidValueLengthException if invalid length
+     */
+    public void writeValue(byte[] _value, GattWriteOptions _options) throws BluezFailedException, BluezInProgressException, BluezNotPermittedException, BluezNotAuthorizedException, BluezNotSupportedException, BluezInvalidValueLengthException {
+        gattCharacteristic.WriteValue(_value, _options.toVariantMap());
+    }
+
+    /**
+     * Read a value from the GATT characteristics register using prebuilt options.<br>
+     * The options are passed as is, no maps or variants are created by this call.
+     *
+     * @param _options options to use
+     * @return byte array, maybe null
+     * @throws BluezFailedException on failure if anything failed
+     * @throws BluezInProgressException when operation already in progress
+     * @throws BluezNotPermittedException if not permitted
+     * @throws BluezNotAuthorizedException if not authorized
+     * @throws BluezNotSupportedException if not supported
+     * @throws BluezInvalidOffsetException if offset is invalid
+     */
+    public byte[] readValue(GattReadOptions _options) throws BluezFailedException, BluezInProgressException, BluezNotPermittedException, BluezNotAuthorizedException, BluezNotSupportedException, BluezInvalidOffsetException {
+        return gattCharacteristic.ReadValue(_options.toVariantMap());
+    }
+
+    /**
+     * Asynchronous version of {@link #writeValue(byte[], GattWriteOptions)}.
+     *
+     * @param _value value to write
+     * @param _options options to use
+     * @return future completed when the value was written
+     */
+    public CompletableFuture<Void> writeValueAsync(byte[] _value, GattWriteOptions _options) {
+        return DbusHelper.callAsync(getDbusConnection(), gattCharacteristic, "WriteValue", new Class<?>[] {byte[].class, Map.class},
+            _value, _options.toVariantMap());
+    }
+
+    /**
+     * Asynchronous version of {@link #readValue(GattReadOptions)}.
+     *
+     * @param _options options to use
+     * @return future providing the read value
+     */
+    public CompletableFuture<byte[]> readValueAsync(GattReadOptions _options) {
+        return DbusHelper.callAsync(getDbusConnection(), gattCharacteristic, "ReadValue", new Class<?>[] {Map.class},
+            _options.toVariantMap());
+    }
+
     /**
      * <b>From bluez Documentation:</b>
      * <p>
@@ -154,11 +330,34 @@ public class BluetoothGattCharacteristic extends AbstractBluetoothObject {
      * @return cached characteristics value, maybe null
      */
     public byte[] getValue() {
-        List<?> typed = getTyped("Value", ArrayList.class);
-        if (typed != null) {
-            return byteListToByteArray(typed);
-        }
-        return null;
+        return getBytes("Value");
+    }
+
+    /**
+     * Copy the cached value of this characteristic into the given buffer without creating a new array.<br>
+     * The value is written at the current position, the position is advanced by the length of the value.
+     *
+     * @param _target target buffer
+     * @return number of bytes written or -1 if no value is available
+     * @throws java.nio.BufferOverflowException if the remaining space of the buffer is smaller than the value
+     * @see #getValue()
+     */
+    public int getValue(ByteBuffer _target) {
+        return getBytes("Value", _target);
+    }
+
+    /**
+     * <b>From bluez Documentation:</b>
+     * <p>
+     * Characteristic MTU, this is valid both for ReadValue
+     * and WriteValue but either method can use long
+     * procedures when supported.
+     * </p>
+     * @return mtu, maybe null if not supported by bluez
+     */
+    public Integer getMtu() {
+        UInt16 typed = getTyped("MTU", UInt16.class);
+        return typed != null ? typed.intValue() : null;
     }
 
     /**
@@ -240,6 +439,111 @@ public class BluetoothGattCharacteristic extends AbstractBluetoothObject {
         gattCharacteristic.StopNotify();
     }
 
+    /**
+     * Asynchronous version of {@link #startNotify()}.
+     * @return future completed when notifications were enabled
+     */
+    public CompletableFuture<Void> startNotifyAsync() {
+        return DbusHelper.callAsync(getDbusConnection(), gattCharacteristic, "StartNotify", new Class<?>[0]);
+    }
+
+    /**
+     * Asynchronous version of {@link #stopNotify()}.
+     * @return future completed when notifications were disabled
+     */
+    public CompletableFuture<Void> stopNotifyAsync() {
+        return DbusHelper.callAsync(getDbusConnection(), gattCharacteristic, "StopNotify", new Class<?>[0]);
+    }
+
+    /**
+     * Add a listener receiving the values of all notifications/indications of this characteristic.<br>
+     * <br>
+     * All listeners of this characteristic share a single handler registered at the {@link DbusSignalDispatcher},
+     * which routes PropertiesChanged signals by object path. The value of each signal is decoded once
+     * and passed to every listener as read-only buffer.<br>
+     * Notifications have to be enabled using {@link #startNotify()} separately.
+     *
+     * @param _listener listener to add
+     * @throws DBusException if signal handler could not be registered
+     */
+    public void addNotificationListener(GattNotificationHandler _listener) throws DBusException {
+        Objects.requireNonNull(_listener, "Listener required");
+        synchronized (notificationListeners) {
+            if (notificationListeners.isEmpty()) {
+                DbusSignalDispatcher.getInstance(getDbusConnection()).addPropertiesChangedHandler(getDbusPath(), notificationSignalHandler);
+            }
+            notificationListeners.add(_listener);
+        }
+    }
+
+    /**
+     * Remove a listener previously added by {@link #addNotificationListener(GattNotificationHandler)}.<br>
+     * Does not call {@link #stopNotify()}.
+     *
+     * @param _listener listener to remove
+     */
+    public void removeNotificationListener(GattNotificationHandler _listener) {
+        synchronized (notificationListeners) {
+            if (notificationListeners.remove(_listener) && notificationListeners.isEmpty()) {
+                DbusSignalDispatcher.getInstance(getDbusConnection()).removePropertiesChangedHandler(getDbusPath(), notificationSignalHandler);
+            }
+        }
+    }
+
+    private void dispatchNotification(PropertiesChanged _signal) {
+        if (!GattCharacteristic1.class.getName().equals(_signal.getInterfaceName())) {
+            return;
+        }
+        Variant<?> value = _signal.getPropertiesChanged().get("Value");
+        byte[] bytes = value != null ? PropertySnapshot.toBytes(value.getValue()) : null;
+        if (bytes == null) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+        for (GattNotificationHandler listener : notificationListeners) {
+            try {
+                listener.onNotification(buffer.duplicate());
+            } catch (RuntimeException _ex) {
+                logger.warn("Error in notification listener of {}", getDbusPath(), _ex);
+            }
+        }
+    }
+
+    /**
+     * Open a channel receiving all notifications/indications of this characteristic.<br>
+     * <br>
+     * If possible, AcquireNotify is used, so notifications are read from a file descriptor
+     * without DBus signal processing. If AcquireNotify is not supported (by bluez, the characteristic
+     * or the DBus transport), StartNotify and PropertiesChanged signals are used instead.<br>
+     * Close the returned channel to stop receiving notifications.
+     *
+     * @param _handler handler receiving the notifications
+     * @return open channel
+     * @throws BluezFailedException on failure if operation failed
+     * @throws BluezInProgressException when operation already in progress if operation already in progress
+     * @throws BluezNotSupportedException when operation not supported if operation is not supported
+     * @throws BluezNotPermittedException if access is not permitted
+     * @throws BluezNotConnectedException when bluez is not connected
+     */
+    public GattNotificationChannel openNotificationChannel(GattNotificationHandler _handler) throws BluezFailedException, BluezInProgressException, BluezNotSupportedException, BluezNotPermittedException, BluezNotConnectedException {
+        Objects.requireNonNull(_handler, "Handler required");
+        return GattNotificationChannel.open(this, _handler);
+    }
+
+    /**
+     * Open a channel to write values without response (e.g. for firmware uploads).<br>
+     * <br>
+     * If possible, AcquireWrite is used, so packets are written to a file descriptor
+     * without creating a DBus message per packet. If AcquireWrite is not supported,
+     * every packet is sent using WriteValue with type "command".<br>
+     * The channel has to be closed to release the acquired file descriptor.
+     *
+     * @return open channel
+     */
+    public GattWriteChannel openWriteChannel() {
+        return GattWriteChannel.open(this);
+    }
+
     @Override
     public String toString() {
         return getClass().getSimpleName() + " [gattCharacteristic=" + gattCharacteristic
@@ -1,11 +1,14 @@
 package com.github.hypfvieh.bluetooth.wrapper;
 
+import com.github.hypfvieh.DbusHelper;
 import org.bluez.GattDescriptor1;
 import org.bluez.exceptions.*;
 import org.freedesktop.dbus.connections.impl.DBusConnection;
 import org.freedesktop.dbus.interfaces.DBusInterface;
 
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Wrapper class which represents a GATT descriptor on a remote device.
@@ -71,6 +74,89 @@ public class BluetoothGattDescriptor extends AbstractBluetoothObject {
         return descriptor.ReadValue(optionsToVariantMap(_options));
     }
 
+    /**
+     * Asynchronous version of {@link #writeValue(byte[], Map)}.<br>
+     * The returned future is completed by a DBus worker thread, errors are reported
+     * using the exceptions of package org.bluez.exceptions.
+     *
+     * @param _value value to write
+     * @param _options options to use
+     * @return future completed when the value was written
+     */
+    public CompletableFuture<Void> writeValueAsync(byte[] _value, Map<String, Object> _options) {
+        return DbusHelper.callAsync(getDbusConnection(), descriptor, "WriteValue", new Class<?>[] {byte[].class, Map.class},
+            _value, optionsToVariantMap(_options));
+    }
+
+    /**
+     * Asynchronous version of {@link #readValue(Map)}.<br>
+     * The returned future is completed by a DBus worker thread, errors are reported
+     * using the exceptions of package org.bluez.exceptions.
+     *
+     * @param _options options to use
+     * @return future providing the read value
+     */
+    public CompletableFuture<byte[]> readValueAsync(Map<String, Object> _options) {
+        return DbusHelper.callAsync(getDbusConnection(), descriptor, "ReadValue", new Class<?>[] {Map.class},
+            optionsToVariantMap(_options));
+    }
+
+    /**
+     * Write value to the GATT descriptor register using prebuilt options.<br>
+     * The options are passed as is, no maps or variants are created by this call.
+     *
+     * @param _value value to write
+     * @param _options options to use
+     * @throws BluezFailedException on failure if operation failed
+     * @throws BluezInProgressException when operation already in progress
+     * @throws BluezNotPermittedException if operation is not permitted
+     * @throws BluezNotAuthorizedException if not authorized
+     * @throws BluezNotSupportedException if not supported
+     * @throws BluezInvalidValueLengthException if invalid length
+     */
+    public void writeValue(byte[] _value, GattWriteOptions _options) throws BluezFailedException, BluezInProgressException, BluezNotPermittedException, BluezNotAuthorizedException, BluezNotSupportedException, BluezInvalidValueLengthException {
+        descriptor.WriteValue(_value, _options.toVariantMap());
+    }
+
+    /**
+     * Read a value from the GATT descriptor register using prebuilt options.<br>
+     * The options are passed as is, no maps or variants are created by this call.
+     *
+     * @param _options options to use
+     * @return byte array, maybe null
+     * @throws BluezFailedException on failure if anything failed
+     * @throws BluezInProgressException when operation already in progress
+     * @throws BluezNotPermittedException if not permitted
+     * @throws BluezNotAuthorizedException if not authorized
+     * @throws BluezNotSupportedException if not supported
+     */
+    public byte[] readValue(GattReadOptions _options) throws BluezFailedException, BluezInProgressException, BluezNotPermittedException, BluezNotAuthorizedException, BluezNotSupportedException {
+        return descriptor.ReadValue(_options.toVariantMap());
+    }
+
+    /**
+     * Asynchronous version of {@link #writeValue(byte[], GattWriteOptions)}.
+     *
+     * @param _value value to write
+     * @param _options options to use
+     * @return future completed when the value was written
+     */
+    public CompletableFuture<Void> writeValueAsync(byte[] _value, GattWriteOptions _options) {
+        return DbusHelper.callAsync(getDbusConnection(), descriptor, "WriteValue", new Class<?>[] {byte[].class, Map.class},
+            _value, _options.toVariantMap());
+    }
+
+    /**
+     * Asynchronous version of {@link #readValue(GattReadOptions)}.
+     *
+     * @param _options options to use
+     * @return future providing the read value
+     */
+    public CompletableFuture<byte[]> readValueAsync(GattReadOptions _options) {
+        return DbusHelper.callAsync(getDbusConnection(), descriptor, "ReadValue", new Class<?>[] {Map.class},
+            _options.toVariantMap());
+    }
+
     /**
      * <b>From bluez Documentation:</b>
      * <p>
@@ -108,11 +194,20 @@ public class BluetoothGattDescriptor extends AbstractBluetoothObject {
      * @return byte array, maybe null
      */
     public byte[] getValue() {
-        List<?> typed = getTyped("Value", ArrayList.class);
-        if (typed != null) {
-            return byteListToByteArray(typed);
-        }
-        return null;
+        return getBytes("Value");
+    }
+
+    /**
+     * Copy the cached value of this descriptor into the given buffer without creating a new array.<br>
+     * The value is written at the current position, the position is advanced by the length of the value.
+     *
+     * @param _target target buffer
+     * @return number of bytes written or -1 if no value is available
+     * @throws java.nio.BufferOverflowException if the remaining space of the buffer is smaller than the value
+     * @see #getValue()
+     */
+    public int getValue(ByteBuffer _target) {
+        return getBytes("Value", _target);
     }
 
     /**
@@ -6,6 +6,8 @@ import org.bluez.GattService1;
 import org.bluez.exceptions.BluezNotImplementedException;
 import org.freedesktop.dbus.connections.impl.DBusConnection;
 import org.freedesktop.dbus.interfaces.DBusInterface;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.*;
 import java.util.Map.Entry;
@@ -20,7 +22,9 @@ public class BluetoothGattService extends AbstractBluetoothObject {
     private final GattService1 service;
     private final BluetoothDevice device;
 
-    private final Map<String, BluetoothGattCharacteristic> characteristicByUuid = new LinkedHashMap<>();
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final ChildObjectMap<BluetoothGattCharacteristic> characteristicByUuid = new ChildObjectMap<>(this, GattCharacteristic1.class, this::onCharacteristicsChanged);
 
     public BluetoothGattService(GattService1 _service, BluetoothDevice _device, String _dbusPath, DBusConnection _dbusConnection) {
         super(BluetoothDeviceType.GATT_SERVICE, _dbusConnection, _dbusPath);
@@ -40,26 +44,84 @@ public class BluetoothGattService extends AbstractBluetoothObject {
      * Re-queries the GattCharacteristics from the device.
      */
     public void refreshGattCharacteristics() {
-        characteristicByUuid.clear();
+        long generation = characteristicByUuid.getGeneration();
+        setGattCharacteristics(discoverGattCharacteristics(), generation);
+    }
+
+    /**
+     * Generation of the characteristic list, has to be read before {@link #discoverGattCharacteristics()} is called.
+     * @return generation
+     */
+    long getGattCharacteristicsGeneration() {
+        return characteristicByUuid.getGeneration();
+    }
+
+    /**
+     * Query the {@link BluetoothGattCharacteristic}s of this service without changing the current list.
+     * @return characteristics by UUID
+     */
+    Map<BluetoothUuid, BluetoothGattCharacteristic> discoverGattCharacteristics() {
+        Map<BluetoothUuid, BluetoothGattCharacteristic> found = new LinkedHashMap<>();
 
         Set<String> findNodes = DbusHelper.findNodes(getDbusConnection(), getDbusPath());
         Map<String, GattCharacteristic1> remoteObjects = getRemoteObjects(findNodes, getDbusPath(), GattCharacteristic1.class);
         for (Entry<String, GattCharacteristic1> entry : remoteObjects.entrySet()) {
             BluetoothGattCharacteristic bluetoothGattCharacteristics = new BluetoothGattCharacteristic(entry.getValue(), this, entry.getKey(), getDbusConnection());
-            characteristicByUuid.put(bluetoothGattCharacteristics.getUuid(), bluetoothGattCharacteristics);
+            if (isPropertyCacheEnabled()) {
+                bluetoothGattCharacteristics.enablePropertyCache(getPropertyCacheMaxAge());
+            }
+            BluetoothUuid uuid = BluetoothUuid.tryParse(bluetoothGattCharacteristics.getUuid());
+            if (uuid == null) {
+                logger.debug("Ignoring GATT characteristic {} with invalid UUID {}", entry.getKey(), bluetoothGattCharacteristics.getUuid());
+                bluetoothGattCharacteristics.disablePropertyCache();
+                continue;
+            }
+            found.put(uuid, bluetoothGattCharacteristics);
         }
+        return found;
+    }
+
+    /**
+     * Replace all {@link BluetoothGattCharacteristic}s of this service (e.g. with characteristics restored from a cache).
+     * @param _characteristics characteristics by UUID
+     * @param _generation generation read by {@link #getGattCharacteristicsGeneration()} before the characteristics were queried
+     */
+    void setGattCharacteristics(Map<BluetoothUuid, BluetoothGattCharacteristic> _characteristics, long _generation) {
+        characteristicByUuid.replaceAll(_characteristics, _generation);
+    }
+
+    /**
+     * Add a {@link BluetoothGattCharacteristic} published by bluez.
+     * @param _uuid UUID of the characteristic
+     * @param _characteristic characteristic to add
+     */
+    void addGattCharacteristic(BluetoothUuid _uuid, BluetoothGattCharacteristic _characteristic) {
+        characteristicByUuid.put(_uuid, _characteristic);
+    }
+
+    /**
+     * Mark the current characteristics as complete, so they are not queried again.
+     */
+    void markGattCharacteristicsLoaded() {
+        characteristicByUuid.markLoaded();
+    }
+
+    /**
+     * Remove a {@link BluetoothGattCharacteristic} which is no longer available.
+     * @param _characteristic characteristic to remove
+     */
+    void removeGattCharacteristic(BluetoothGattCharacteristic _characteristic) {
+        characteristicByUuid.remove(_characteristic);
     }
 
     /**
      * Get the currently available GATT characteristics.<br>
-     * Will issue a query if {@link #refreshGattCharacteristics()} wasn't called before.
+     * Will issue a query if the characteristics were not loaded before or bluez added characteristics since.
      * @return List, maybe empty but never null
      */
     public List<BluetoothGattCharacteristic> getGattCharacteristics() {
-        if (characteristicByUuid.isEmpty()) {
-            refreshGattCharacteristics();
-        }
-        return new ArrayList<>(characteristicByUuid.values());
+        characteristicByUuid.ensureLoaded(this::refreshGattCharacteristics);
+        return characteristicByUuid.values();
     }
 
     /**
@@ -68,12 +130,35 @@ public class BluetoothGattService extends AbstractBluetoothObject {
      * @return maybe null if not found
      */
     public BluetoothGattCharacteristic getGattCharacteristicByUuid(String _uuid) {
-        if (characteristicByUuid.isEmpty()) {
-            refreshGattCharacteristics();
-        }
+        characteristicByUuid.ensureLoaded(this::refreshGattCharacteristics);
         return characteristicByUuid.get(_uuid);
     }
 
+    /**
+     * Return the {@link BluetoothGattCharacteristic} object for the given UUID.
+     * @param _uuid uuid
+     * @return maybe null if not found
+     */
+    public BluetoothGattCharacteristic getGattCharacteristicByUuid(BluetoothUuid _uuid) {
+        characteristicByUuid.ensureLoaded(this::refreshGattCharacteristics);
+        return characteristicByUuid.get(_uuid);
+    }
+
+    /**
+     * Characteristics of this service by UUID, loaded if necessary.
+     * @return unmodifiable map
+     */
+    Map<BluetoothUuid, BluetoothGattCharacteristic> getGattCharacteristicMap() {
+        characteristicByUuid.ensureLoaded(this::refreshGattCharacteristics);
+        return characteristicByUuid.asMap();
+    }
+
+    private void onCharacteristicsChanged() {
+        if (device != null) {
+            device.invalidateCharacteristicIndex();
+        }
+    }
+
     /**
      * <b>From bluez Documentation:</b>
      * <p>
@@ -0,0 +1,355 @@
+package com.github.hypfvieh.bluetooth.wrapper;
+
+import com.github.hypfvieh.DbusSignalDispatcher;
+import org.bluez.Device1;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.interfaces.DBusSigHandler;
+import org.freedesktop.dbus.interfaces.Properties.PropertiesChanged;
+import org.freedesktop.dbus.types.Variant;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps devices connected by reconnecting them after they dropped the connection.<br>
+ * <br>
+ * The Connected and ServicesResolved properties of every watched device are observed using PropertiesChanged signals,
+ * no polling is done. When a device disconnects, it is reconnected using exponential backoff with jitter
+ * (a random delay between half and the full backoff delay), so many devices dropping at once do not reconnect
+ * at the same time.<br>
+ * <br>
+ * Notifications subscribed by {@link #subscribe(BluetoothGattCharacteristic, GattNotificationHandler)} are re-armed
+ * when the services of the device have been resolved again. If bluez created new GATT objects,
+ * the listener is moved to the new characteristic object.
+ *
+ * @author hypfvieh
+ */
+public final class BluetoothReconnectSupervisor {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final Executor executor;
+    private final Map<String, WatchedDevice> watched = new ConcurrentHashMap<>();
+
+    private volatile long initialDelay = 1_000;
+    private volatile long maxDelay = 60_000;
+    private volatile int maxAttempts;
+    private volatile long connectTimeout = 30_000;
+
+    /**
+     * Create a new supervisor.
+     * @param _executor executor used to schedule reconnects and to re-arm notifications (may block on DBus calls)
+     */
+    public BluetoothReconnectSupervisor(Executor _executor) {
+        executor = Objects.requireNonNull(_executor, "Executor required");
+    }
+
+    /**
+     * Delay before reconnecting. The delay is doubled on every failed attempt until the maximum is reached.
+     * @param _initialDelay delay before first attempt in milliseconds
+     * @param _maxDelay maximum delay in milliseconds
+     */
+    public void setBackoff(long _initialDelay, long _maxDelay) {
+        initialDelay = Math.max(1, _initialDelay);
+        maxDelay = Math.max(initialDelay, _maxDelay);
+    }
+
+    public long getInitialDelay() {
+        return initialDelay;
+    }
+
+    public long getMaxDelay() {
+        return maxDelay;
+    }
+
+    /**
+     * Maximum number of reconnect attempts after a device disconnected.
+     * @param _maxAttempts attempts, 0 or less to retry forever
+     */
+    public void setMaxAttempts(int _maxAttempts) {
+        maxAttempts = _maxAttempts;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Timeout of a single connect attempt.
+     * @param _connectTimeout timeout in milliseconds, 0 or less to wait for the reply of bluez
+     */
+    public void setConnectTimeout(long _connectTimeout) {
+        connectTimeout = _connectTimeout;
+    }
+
+    public long getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * Start watching the given device. If the device is currently not connected, reconnecting is started.
+     * @param _device device
+     * @throws DBusException if signal handler could not be registered
+     */
+    public void watch(BluetoothDevice _device) throws DBusException {
+        getOrWatch(_device);
+    }
+
+    /**
+     * Stop watching the given device. Subscriptions of the device are removed from their characteristics,
+     * running connect attempts are not aborted.
+     * @param _device device
+     */
+    public void unwatch(BluetoothDevice _device) {
+        WatchedDevice device = watched.remove(_device.getDbusPath());
+        if (device == null) {
+            return;
+        }
+        synchronized (device) {
+            device.active = false;
+            device.reconnecting = false;
+        }
+        DbusSignalDispatcher.getInstance(_device.getDbusConnection()).removePropertiesChangedHandler(_device.getDbusPath(), device.signalHandler);
+        for (Subscription subscription : device.subscriptions) {
+            subscription.characteristic.removeNotificationListener(subscription.handler);
+        }
+        device.subscriptions.clear();
+    }
+
+    public boolean isWatched(BluetoothDevice _device) {
+        return watched.containsKey(_device.getDbusPath());
+    }
+
+    /**
+     * Check if the supervisor is trying to reconnect the given device.
+     * @param _device device
+     * @return true if reconnecting
+     */
+    public boolean isReconnecting(BluetoothDevice _device) {
+        WatchedDevice device = watched.get(_device.getDbusPath());
+        if (device == null) {
+            return false;
+        }
+        synchronized (device) {
+            return device.reconnecting;
+        }
+    }
+
+    /**
+     * Add a notification listener to the given characteristic and enable notifications.<br>
+     * The device of the characteristic is watched and notifications are enabled again after every reconnect.
+     *
+     * @param _characteristic characteristic
+     * @param _handler listener
+     * @return future completed when notifications were enabled
+     * @throws DBusException if signal handler could not be registered
+     */
+    public CompletableFuture<Void> subscribe(BluetoothGattCharacteristic _characteristic, GattNotificationHandler _handler) throws DBusException {
+        BluetoothUuid serviceUuid = BluetoothUuid.tryParse(_characteristic.getService().getUuid());
+        BluetoothUuid characteristicUuid = BluetoothUuid.tryParse(_characteristic.getUuid());
+        if (serviceUuid == null || characteristicUuid == null) {
+            throw new IllegalArgumentException("UUID of characteristic " + _characteristic.getDbusPath() + " is unknown");
+        }
+        WatchedDevice device = getOrWatch(_characteristic.getService().getDevice());
+        _characteristic.addNotificationListener(_handler);
+        device.subscriptions.add(new Subscription(serviceUuid, characteristicUuid, _characteristic, _handler));
+        return _characteristic.startNotifyAsync();
+    }
+
+    /**
+     * Remove a subscription added by {@link #subscribe(BluetoothGattCharacteristic, GattNotificationHandler)}.<br>
+     * Removes the listener from the characteristic, does not disable notifications.
+     *
+     * @param _characteristic characteristic
+     * @param _handler listener
+     */
+    public void unsubscribe(BluetoothGattCharacteristic _characteristic, GattNotificationHandler _handler) {
+        WatchedDevice device = watched.get(_characteristic.getService().getDevice().getDbusPath());
+        if (device == null) {
+            return;
+        }
+        for (Subscription subscription : device.subscriptions) {
+            if (subscription.handler == _handler && subscription.characteristic.getDbusPath().equals(_characteristic.getDbusPath())) {
+                device.subscriptions.remove(subscription);
+                subscription.characteristic.removeNotificationListener(_handler);
+            }
+        }
+    }
+
+    private WatchedDevice getOrWatch(BluetoothDevice _device) throws DBusException {
+        WatchedDevice device = watched.get(_device.getDbusPath());
+        if (device != null) {
+            return device;
+        }
+        WatchedDevice created = new WatchedDevice(_device);
+        device = watched.putIfAbsent(_device.getDbusPath(), created);
+        if (device != null) {
+            return device;
+        }
+        try {
+            DbusSignalDispatcher.getInstance(_device.getDbusConnection()).addPropertiesChangedHandler(_device.getDbusPath(), created.signalHandler);
+        } catch (DBusException _ex) {
+            watched.remove(_device.getDbusPath(), created);
+            throw _ex;
+        }
+        if (Boolean.FALSE.equals(_device.isConnected())) {
+            disconnected(created);
+        }
+        return created;
+    }
+
+    private void handleSignal(WatchedDevice _device, PropertiesChanged _signal) {
+        if (!Device1.class.getName().equals(_signal.getInterfaceName())) {
+            return;
+        }
+        Map<String, Variant<?>> changed = _signal.getPropertiesChanged();
+        Variant<?> connected = changed.get("Connected");
+        if (connected != null) {
+            if (Boolean.TRUE.equals(connected.getValue())) {
+                synchronized (_device) {
+                    _device.reconnecting = false;
+                }
+            } else {
+                disconnected(_device);
+            }
+        }
+        Variant<?> resolved = changed.get("ServicesResolved");
+        if (resolved != null && Boolean.TRUE.equals(resolved.getValue())) {
+            boolean rearm;
+            synchronized (_device) {
+                rearm = _device.active && _device.rearmPending;
+                _device.rearmPending = false;
+            }
+            if (rearm && !_device.subscriptions.isEmpty()) {
+                executor.execute(() -> rearm(_device));
+            }
+        }
+    }
+
+    private void disconnected(WatchedDevice _device) {
+        synchronized (_device) {
+            _device.rearmPending = true;
+            if (!_device.active || _device.reconnecting) {
+                return;
+            }
+            _device.reconnecting = true;
+            _device.attempts = 0;
+        }
+        logger.debug("Device {} disconnected, reconnecting", _device.device.getDbusPath());
+        schedule(_device);
+    }
+
+    private void schedule(WatchedDevice _device) {
+        int attempts;
+        synchronized (_device) {
+            attempts = _device.attempts;
+        }
+        long max = maxDelay;
+        long delay = initialDelay;
+        for (int i = 0; i < attempts && delay < max; i++) {
+            delay *= 2;
+        }
+        delay = Math.min(delay, max);
+        long jittered = delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+        CompletableFuture.runAsync(() -> attempt(_device), CompletableFuture.delayedExecutor(jittered, TimeUnit.MILLISECONDS, executor));
+    }
+
+    private void attempt(WatchedDevice _device) {
+        synchronized (_device) {
+            if (!_device.active || !_device.reconnecting) {
+                return;
+            }
+            _device.attempts++;
+        }
+        _device.device.connectAsync(connectTimeout, TimeUnit.MILLISECONDS).whenComplete((r, ex) -> {
+            if (ex == null) {
+                synchronized (_device) {
+                    _device.reconnecting = false;
+                }
+                logger.debug("Device {} reconnected", _device.device.getDbusPath());
+                return;
+            }
+            int max = maxAttempts;
+            synchronized (_device) {
+                if (!_device.active || !_device.reconnecting) {
+                    return;
+                }
+                if (max > 0 && _device.attempts >= max) {
+                    _device.reconnecting = false;
+                    logger.info("Giving up reconnecting {} after {} attempts", _device.device.getDbusPath(), _device.attempts);
+                    return;
+                }
+            }
+            logger.debug("Reconnecting {} failed", _device.device.getDbusPath(), ex);
+            schedule(_device);
+        });
+    }
+
+    /**
+     * Enable notifications of all subscriptions of the device, the characteristic objects are looked up again
+     * as bluez may have created new GATT objects.
+     */
+    private void rearm(WatchedDevice _device) {
+        for (Subscription subscription : _device.subscriptions) {
+            BluetoothGattCharacteristic current = _device.device.getGattCharacteristic(subscription.serviceUuid, subscription.characteristicUuid);
+            if (current == null) {
+                logger.warn("Characteristic {} of service {} not found on {}, notifications not enabled",
+                    subscription.characteristicUuid, subscription.serviceUuid, _device.device.getDbusPath());
+                continue;
+            }
+            if (current != subscription.characteristic) {
+                try {
+                    current.addNotificationListener(subscription.handler);
+                } catch (DBusException _ex) {
+                    logger.warn("Unable to add notification listener to {}", current.getDbusPath(), _ex);
+                    continue;
+                }
+                subscription.characteristic.removeNotificationListener(subscription.handler);
+                subscription.characteristic = current;
+            }
+            current.startNotifyAsync().whenComplete((v, ex) -> {
+                if (ex != null) {
+                    logger.warn("Unable to enable notifications on {}", current.getDbusPath(), ex);
+                }
+            });
+        }
+    }
+
+    /**
+     * State of a watched device, mutable fields are guarded by the instance.
+     */
+    private final class WatchedDevice {
+        private final BluetoothDevice device;
+        private final DBusSigHandler<PropertiesChanged> signalHandler = s -> handleSignal(this, s);
+        private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+        private boolean active = true;
+        private boolean reconnecting;
+        private boolean rearmPending;
+        private int attempts;
+
+        WatchedDevice(BluetoothDevice _device) {
+            device = _device;
+        }
+    }
+
+    private static final class Subscription {
+        private final BluetoothUuid serviceUuid;
+        private final BluetoothUuid characteristicUuid;
+        private final GattNotificationHandler handler;
+        private volatile BluetoothGattCharacteristic characteristic;
+
+        Subscription(BluetoothUuid _serviceUuid, BluetoothUuid _characteristicUuid, BluetoothGattCharacteristic _characteristic, GattNotificationHandler _handler) {
+            serviceUuid = _serviceUuid;
+            characteristicUuid = _characteristicUuid;
+            characteristic = _characteristic;
+            handler = _handler;
+        }
+    }
+}
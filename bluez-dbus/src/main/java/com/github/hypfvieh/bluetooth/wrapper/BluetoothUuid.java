@@ -0,0 +1,209 @@
+package com.github.hypfvieh.bluetooth.wrapper;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Immutable 128-bit bluetooth UUID stored as two longs.<br>
+ * <br>
+ * 16-bit and 32-bit UUIDs are expanded using the bluetooth base UUID (0000xxxx-0000-1000-8000-00805f9b34fb).
+ * Instances for the 16-bit UUIDs assigned by the Bluetooth SIG for services, units, descriptors and characteristics
+ * (0x1800 - 0x2bff) are interned, so repeated parsing of those UUIDs does not create new objects.
+ *
+ * @author hypfvieh
+ */
+public final class BluetoothUuid implements Comparable<BluetoothUuid> {
+
+    private static final char[] HEX_CHARS = "0123456789abcdef".toCharArray();
+
+    /** Lower 32 bits of the most significant bits of the base UUID */
+    private static final long BASE_MSB = 0x00001000L;
+    /** Least significant bits of the base UUID */
+    private static final long BASE_LSB = 0x800000805F9B34FBL;
+
+    private static final int SIG_FIRST = 0x1800;
+    private static final int SIG_LAST = 0x2BFF;
+    private static final AtomicReferenceArray<BluetoothUuid> SIG_UUIDS = new AtomicReferenceArray<>(SIG_LAST - SIG_FIRST + 1);
+
+    private final long msb;
+    private final long lsb;
+
+    private BluetoothUuid(long _msb, long _lsb) {
+        msb = _msb;
+        lsb = _lsb;
+    }
+
+    /**
+     * Create a UUID from the given 128-bit value.
+     *
+     * @param _msb most significant 64 bits
+     * @param _lsb least significant 64 bits
+     * @return uuid
+     */
+    public static BluetoothUuid of(long _msb, long _lsb) {
+        if (_lsb == BASE_LSB && (_msb & 0xFFFFFFFFL) == BASE_MSB) {
+            long shortValue = _msb >>> 32;
+            if (shortValue >= SIG_FIRST && shortValue <= SIG_LAST) {
+                return interned((int) shortValue);
+            }
+        }
+        return new BluetoothUuid(_msb, _lsb);
+    }
+
+    /**
+     * Create a UUID from the given 16-bit or 32-bit value using the bluetooth base UUID.
+     *
+     * @param _value 16-bit or 32-bit value
+     * @return uuid
+     * @throws IllegalArgumentException if value does not fit in 32 bits
+     */
+    public static BluetoothUuid fromShort(long _value) {
+        if (_value < 0 || _value > 0xFFFFFFFFL) {
+            throw new IllegalArgumentException("Not a valid 16-bit or 32-bit UUID: " + _value);
+        }
+        return of(_value << 32 | BASE_MSB, BASE_LSB);
+    }
+
+    /**
+     * Create a UUID from a {@link UUID}.
+     * @param _uuid uuid
+     * @return uuid
+     */
+    public static BluetoothUuid of(UUID _uuid) {
+        return of(_uuid.getMostSignificantBits(), _uuid.getLeastSignificantBits());
+    }
+
+    /**
+     * Parse a 16-bit (180f), 32-bit (0000180f) or 128-bit (0000180f-0000-1000-8000-00805f9b34fb) UUID.<br>
+     * Upper and lower case characters are accepted, 16-bit and 32-bit values may be prefixed by 0x.
+     *
+     * @param _uuid uuid string
+     * @return uuid
+     * @throws IllegalArgumentException if given String is not a valid UUID
+     */
+    public static BluetoothUuid parse(String _uuid) {
+        BluetoothUuid uuid = tryParse(_uuid);
+        if (uuid == null) {
+            throw new IllegalArgumentException("Not a valid bluetooth UUID: " + _uuid);
+        }
+        return uuid;
+    }
+
+    /**
+     * Parse a UUID like {@link #parse(String)} but return null instead of throwing an exception.
+     * @param _uuid uuid string
+     * @return uuid or null if invalid
+     */
+    static BluetoothUuid tryParse(String _uuid) {
+        if (_uuid == null) {
+            return null;
+        }
+        int offset = _uuid.startsWith("0x") || _uuid.startsWith("0X") ? 2 : 0;
+        int len = _uuid.length() - offset;
+        if (len == 4 || len == 8) {
+            long value = hex(_uuid, offset, _uuid.length());
+            return value < 0 ? null : fromShort(value);
+        } else if (len == 36 && offset == 0) {
+            if (_uuid.charAt(8) != '-' || _uuid.charAt(13) != '-' || _uuid.charAt(18) != '-' || _uuid.charAt(23) != '-') {
+                return null;
+            }
+            long p1 = hex(_uuid, 0, 8);
+            long p2 = hex(_uuid, 9, 13);
+            long p3 = hex(_uuid, 14, 18);
+            long p4 = hex(_uuid, 19, 23);
+            long p5 = hex(_uuid, 24, 36);
+            if (p1 < 0 || p2 < 0 || p3 < 0 || p4 < 0 || p5 < 0) {
+                return null;
+            }
+            return of(p1 << 32 | p2 << 16 | p3, p4 << 48 | p5);
+        }
+        return null;
+    }
+
+    /**
+     * Parse hex digits, returns -1 if any character is not a hex digit.
+     */
+    private static long hex(String _str, int _from, int _to) {
+        long result = 0;
+        for (int i = _from; i < _to; i++) {
+            int digit = Character.digit(_str.charAt(i), 16);
+            if (digit < 0) {
+                return -1;
+            }
+            result = result << 4 | digit;
+        }
+        return result;
+    }
+
+    private static BluetoothUuid interned(int _shortValue) {
+        int idx = _shortValue - SIG_FIRST;
+        BluetoothUuid uuid = SIG_UUIDS.get(idx);
+        if (uuid == null) {
+            SIG_UUIDS.compareAndSet(idx, null, new BluetoothUuid((long) _shortValue << 32 | BASE_MSB, BASE_LSB));
+            uuid = SIG_UUIDS.get(idx);
+        }
+        return uuid;
+    }
+
+    public long getMostSignificantBits() {
+        return msb;
+    }
+
+    public long getLeastSignificantBits() {
+        return lsb;
+    }
+
+    /**
+     * Returns true if this UUID is based on the bluetooth base UUID (16-bit or 32-bit UUID).
+     * @return true if short form is available
+     */
+    public boolean isShortUuid() {
+        return lsb == BASE_LSB && (msb & 0xFFFFFFFFL) == BASE_MSB;
+    }
+
+    /**
+     * The 16-bit or 32-bit value of this UUID.
+     * @return value or -1 if this is no UUID based on the bluetooth base UUID
+     */
+    public long toShortValue() {
+        return isShortUuid() ? msb >>> 32 : -1;
+    }
+
+    public UUID toUuid() {
+        return new UUID(msb, lsb);
+    }
+
+    @Override
+    public int compareTo(BluetoothUuid _o) {
+        int cmp = Long.compareUnsigned(msb, _o.msb);
+        return cmp != 0 ? cmp : Long.compareUnsigned(lsb, _o.lsb);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(msb ^ lsb);
+    }
+
+    @Override
+    public boolean equals(Object _obj) {
+        return this == _obj || _obj instanceof BluetoothUuid && ((BluetoothUuid) _obj).msb == msb && ((BluetoothUuid) _obj).lsb == lsb;
+    }
+
+    /**
+     * UUID in the 128-bit format used by bluez (lower case, e.g. 0000180f-0000-1000-8000-00805f9b34fb).
+     */
+    @Override
+    public String toString() {
+        char[] chars = new char[36];
+        int pos = 0;
+        for (int i = 0; i < 32; i++) {
+            if (i == 8 || i == 12 || i == 16 || i == 20) {
+                chars[pos++] = '-';
+            }
+            long bits = i < 16 ? msb : lsb;
+            int shift = 60 - (i % 16) * 4;
+            chars[pos++] = HEX_CHARS[(int) (bits >>> shift) & 0x0F];
+        }
+        return new String(chars);
+    }
+}
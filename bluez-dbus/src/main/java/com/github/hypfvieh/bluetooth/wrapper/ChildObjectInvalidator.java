@@ -0,0 +1,105 @@
+package com.github.hypfvieh.bluetooth.wrapper;
+
+import com.github.hypfvieh.DbusSignalDispatcher;
+import org.freedesktop.dbus.connections.impl.DBusConnection;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.interfaces.ObjectManager.InterfacesAdded;
+import org.freedesktop.dbus.interfaces.ObjectManager.InterfacesRemoved;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the loaded child object maps of a connection in sync with the objects published by bluez.<br>
+ * <br>
+ * A single InterfacesAdded and InterfacesRemoved handler is registered per connection.
+ * Signals are routed by the parent path of the added or removed object, so the cost per signal does not
+ * depend on the number of wrapper objects. An added child marks the map of its parent stale,
+ * a removed child is dropped from the map of its parent.
+ *
+ * @author hypfvieh
+ */
+final class ChildObjectInvalidator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChildObjectInvalidator.class);
+
+    private static final Map<DBusConnection, ChildObjectInvalidator> INSTANCES = new WeakHashMap<>();
+
+    /** DBus object path of the owner <-> child maps of objects with this path (weakly referenced) */
+    private final Map<String, Set<ChildObjectMap<?>>> mapsByOwnerPath = new ConcurrentHashMap<>();
+
+    /** Dispatcher the handlers were registered on, null if no connection was given */
+    private final DbusSignalDispatcher dispatcher;
+
+    private ChildObjectInvalidator(DBusConnection _connection) {
+        if (_connection == null) {
+            dispatcher = null;
+            return;
+        }
+        dispatcher = DbusSignalDispatcher.getInstance(_connection);
+        try {
+            dispatcher.addInterfacesAddedHandler(this::handleInterfacesAdded);
+            dispatcher.addInterfacesRemovedHandler(this::handleInterfacesRemoved);
+        } catch (DBusException _ex) {
+            LOGGER.warn("Unable to register signal handlers, loaded GATT objects will not be invalidated", _ex);
+        }
+    }
+
+    static ChildObjectInvalidator getInstance(DBusConnection _connection) {
+        synchronized (INSTANCES) {
+            ChildObjectInvalidator invalidator = INSTANCES.get(_connection);
+            // dispatcher was released (connection closed), its handlers are gone
+            if (invalidator == null || invalidator.dispatcher != null && invalidator.dispatcher != DbusSignalDispatcher.getInstance(_connection)) {
+                invalidator = new ChildObjectInvalidator(_connection);
+                INSTANCES.put(_connection, invalidator);
+            }
+            return invalidator;
+        }
+    }
+
+    void register(String _ownerPath, ChildObjectMap<?> _map) {
+        Set<ChildObjectMap<?>> maps = mapsByOwnerPath.computeIfAbsent(_ownerPath,
+            p -> Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>())));
+        maps.add(_map);
+    }
+
+    private List<ChildObjectMap<?>> getMaps(String _childPath) {
+        int idx = _childPath.lastIndexOf('/');
+        if (idx <= 0) {
+            return List.of();
+        }
+        String ownerPath = _childPath.substring(0, idx);
+        Set<ChildObjectMap<?>> maps = mapsByOwnerPath.get(ownerPath);
+        if (maps == null) {
+            return List.of();
+        }
+        List<ChildObjectMap<?>> result;
+        synchronized (maps) {
+            result = new ArrayList<>(maps);
+        }
+        if (result.isEmpty()) {
+            mapsByOwnerPath.remove(ownerPath, maps);
+        }
+        return result;
+    }
+
+    private void handleInterfacesAdded(InterfacesAdded _signal) {
+        String path = _signal.getObjectPath();
+        for (ChildObjectMap<?> map : getMaps(path)) {
+            if (_signal.getInterfaces().containsKey(map.getChildInterfaceName()) && !map.containsPath(path)) {
+                map.invalidate();
+            }
+        }
+    }
+
+    private void handleInterfacesRemoved(InterfacesRemoved _signal) {
+        String path = _signal.getObjectPath();
+        for (ChildObjectMap<?> map : getMaps(path)) {
+            if (_signal.getInterfaces().contains(map.getChildInterfaceName())) {
+                map.removePath(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.github.hypfvieh.bluetooth.wrapper;
+
+import org.freedesktop.dbus.interfaces.DBusInterface;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copy-on-write map of the child objects (e.g. GATT services of a device) of a bluetooth wrapper object.<br>
+ * Readers never block, every modification publishes a new immutable map.<br>
+ * <br>
+ * The map keeps track whether the children have been loaded, so an empty result is not queried again.
+ * Once loaded, the map is marked stale when bluez adds a child object of the expected interface
+ * and removed child objects are dropped (see {@link ChildObjectInvalidator}).<br>
+ * A generation counter is incremented on every invalidation, a load only marks the map as loaded
+ * if no invalidation happened while it was running.
+ *
+ * @param <T> type of child objects
+ *
+ * @author hypfvieh
+ */
+final class ChildObjectMap<T extends AbstractBluetoothObject> {
+
+    private final AbstractBluetoothObject owner;
+    private final Class<? extends DBusInterface> childInterface;
+    private final Object loadLock = new Object();
+    private final Runnable changeListener;
+
+    private volatile Map<BluetoothUuid, T> children = Map.of();
+    private volatile boolean loaded;
+    private volatile boolean registered;
+    /** Incremented on every invalidation, used to detect changes while loading */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Create a new map.
+     * @param _owner object owning the children
+     * @param _childInterface DBus interface implemented by the children
+     * @param _changeListener called after the children have been changed or invalidated, may be null
+     */
+    ChildObjectMap(AbstractBluetoothObject _owner, Class<? extends DBusInterface> _childInterface, Runnable _changeListener) {
+        owner = _owner;
+        childInterface = _childInterface;
+        changeListener = _changeListener;
+    }
+
+    T get(BluetoothUuid _uuid) {
+        return _uuid == null ? null : children.get(_uuid);
+    }
+
+    /**
+     * Lookup a child by UUID string, any format supported by {@link BluetoothUuid#parse(String)} is accepted.
+     * @param _uuid uuid
+     * @return child or null if not found or UUID is invalid
+     */
+    T get(String _uuid) {
+        return get(BluetoothUuid.tryParse(_uuid));
+    }
+
+    /**
+     * Current children by UUID.
+     * @return unmodifiable map
+     */
+    Map<BluetoothUuid, T> asMap() {
+        return children;
+    }
+
+    List<T> values() {
+        return new ArrayList<>(children.values());
+    }
+
+    boolean isEmpty() {
+        return children.isEmpty();
+    }
+
+    String getChildInterfaceName() {
+        return childInterface.getName();
+    }
+
+    /**
+     * Returns true if the children were loaded and no change was signaled since.
+     * @return true if loaded
+     */
+    boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Current generation, has to be read before querying the children which are passed to {@link #replaceAll(Map, long)}.
+     * @return generation
+     */
+    long getGeneration() {
+        register();
+        return generation.get();
+    }
+
+    /**
+     * Call the given loader if the children are not loaded (or stale).
+     * Concurrent callers wait for the running load instead of loading again.
+     *
+     * @param _loader loader, has to call {@link #replaceAll(Map, long)}
+     */
+    void ensureLoaded(Runnable _loader) {
+        if (!loaded) {
+            synchronized (loadLock) {
+                if (!loaded) {
+                    _loader.run();
+                }
+            }
+        }
+    }
+
+    /**
+     * Mark the current children as complete.
+     */
+    void markLoaded() {
+        register();
+        loaded = true;
+    }
+
+    /**
+     * Mark the children as complete if the map was not invalidated since the given generation was read.
+     * @param _generation generation read before the children were queried
+     */
+    private void markLoaded(long _generation) {
+        register();
+        loaded = true;
+        // invalidate() increments before resetting the flag, so a concurrent invalidation is never lost
+        if (generation.get() != _generation) {
+            loaded = false;
+        }
+    }
+
+    private void register() {
+        if (!registered) {
+            registered = true;
+            ChildObjectInvalidator.getInstance(owner.getDbusConnection()).register(owner.getDbusPath(), this);
+        }
+    }
+
+    /**
+     * Mark the children as stale, the next access will load them again.
+     * The change listener is notified, so data derived from the children is rebuilt as well.
+     */
+    void invalidate() {
+        generation.incrementAndGet();
+        loaded = false;
+        fireChanged();
+    }
+
+    /**
+     * Replace all children and mark them as loaded, unless the map was invalidated since the given generation was read.<br>
+     * Existing children are kept if a new child has the same object path, so wrapper objects are never replaced
+     * by new instances of the same object.
+     * The property cache of all previous children which are not part of the new map
+     * and of all new children which were not used will be disabled.
+     *
+     * @param _children new children
+     * @param _generation generation read by {@link #getGeneration()} before the children were queried
+     */
+    void replaceAll(Map<BluetoothUuid, T> _children, long _generation) {
+        Collection<T> previous;
+        Map<BluetoothUuid, T> merged = new LinkedHashMap<>();
+        synchronized (this) {
+            previous = children.values();
+            Map<String, T> previousByPath = new HashMap<>();
+            previous.forEach(c -> previousByPath.put(c.getDbusPath(), c));
+            for (Map.Entry<BluetoothUuid, T> entry : _children.entrySet()) {
+                T existing = previousByPath.get(entry.getValue().getDbusPath());
+                merged.put(entry.getKey(), existing != null ? existing : entry.getValue());
+            }
+            children = Collections.unmodifiableMap(merged);
+        }
+        markLoaded(_generation);
+        fireChanged();
+        Set<T> kept = Collections.newSetFromMap(new IdentityHashMap<>());
+        kept.addAll(merged.values());
+        for (T child : previous) {
+            if (!kept.contains(child)) {
+                child.disablePropertyCache();
+            }
+        }
+        for (T child : _children.values()) {
+            if (!kept.contains(child)) {
+                child.disablePropertyCache();
+            }
+        }
+    }
+
+    void put(BluetoothUuid _uuid, T _child) {
+        synchronized (this) {
+            Map<BluetoothUuid, T> copy = new LinkedHashMap<>(children);
+            copy.put(_uuid, _child);
+            children = Collections.unmodifiableMap(copy);
+        }
+        fireChanged();
+    }
+
+    /**
+     * Remove the given child (compared by identity).
+     * @param _child child to remove
+     */
+    void remove(T _child) {
+        synchronized (this) {
+            Map<BluetoothUuid, T> copy = new LinkedHashMap<>(children);
+            if (!copy.values().removeIf(c -> c == _child)) {
+                return;
+            }
+            children = Collections.unmodifiableMap(copy);
+        }
+        fireChanged();
+    }
+
+    boolean containsPath(String _path) {
+        for (T child : children.values()) {
+            if (child.getDbusPath().equals(_path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Remove the child with the given object path.
+     * @param _path DBus object path
+     */
+    void removePath(String _path) {
+        List<T> removed = new ArrayList<>();
+        synchronized (this) {
+            Map<BluetoothUuid, T> copy = new LinkedHashMap<>(children);
+            copy.values().removeIf(c -> {
+                if (c.getDbusPath().equals(_path)) {
+                    removed.add(c);
+                    return true;
+                }
+                return false;
+            });
+            if (removed.isEmpty()) {
+                return;
+            }
+            children = Collections.unmodifiableMap(copy);
+        }
+        removed.forEach(AbstractBluetoothObject::disablePropertyCache);
+        fireChanged();
+    }
+
+    private void fireChanged() {
+        if (changeListener != null) {
+            changeListener.run();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.github.hypfvieh.bluetooth.wrapper;
+
+import org.freedesktop.dbus.types.Variant;
+
+import java.util.*;
+
+/**
+ * Immutable options for {@link BluetoothAdapter#connectDevice(ConnectDeviceOptions)}.<br>
+ * Instances hold the prebuilt variant map and can be reused for any number of calls.
+ *
+ * @author hypfvieh
+ */
+public final class ConnectDeviceOptions extends AbstractVariantOptions {
+
+    /**
+     * Address type used for the initial connection.
+     */
+    public enum AddressType {
+        PUBLIC,
+        RANDOM;
+
+        @Override
+        public String toString() {
+            return name().toLowerCase();
+        }
+    }
+
+    private final BluetoothAddress address;
+    private final AddressType addressType;
+
+    private ConnectDeviceOptions(BluetoothAddress _address, AddressType _addressType) {
+        super(toVariants(_address, _addressType));
+        address = _address;
+        addressType = _addressType;
+    }
+
+    /**
+     * Options to connect a BR/EDR device.
+     * @param _address device address
+     * @return options
+     */
+    public static ConnectDeviceOptions of(BluetoothAddress _address) {
+        return of(_address, null);
+    }
+
+    /**
+     * Options to connect a device using the given address type.
+     * @param _address device address
+     * @param _addressType address type, null to create a BR/EDR device
+     * @return options
+     */
+    public static ConnectDeviceOptions of(BluetoothAddress _address, AddressType _addressType) {
+        return new ConnectDeviceOptions(Objects.requireNonNull(_address, "Address required"), _addressType);
+    }
+
+    public BluetoothAddress getAddress() {
+        return address;
+    }
+
+    /**
+     * Address type.
+     * @return type, null if BR/EDR device is created
+     */
+    public AddressType getAddressType() {
+        return addressType;
+    }
+
+    private static Map<String, Variant<?>> toVariants(BluetoothAddress _address, AddressType _addressType) {
+        Map<String, Variant<?>> variants = new LinkedHashMap<>();
+        variants.put("Address", new Variant<>(_address.toString()));
+        if (_addressType != null) {
+            variants.put("AddressType", new Variant<>(_addressType.toString()));
+        }
+        return variants;
+    }
+}
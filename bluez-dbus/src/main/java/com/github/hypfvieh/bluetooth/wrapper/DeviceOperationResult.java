@@ -0,0 +1,14 @@
+package com.github.hypfvieh.bluetooth.wrapper;
+
+/**
+ * Result of an asynchronous device operation like {@link BluetoothDevice#connectAsync(long, java.util.concurrent.TimeUnit)}.<br>
+ * Failures are reported by completing the future exceptionally using the exceptions of package org.bluez.exceptions.
+ *
+ * @author hypfvieh
+ */
+public enum DeviceOperationResult {
+    /** The operation was executed successfully */
+    COMPLETED,
+    /** Nothing to do, bluez reported that the device was already in the requested state (e.g. already connected) */
+    ALREADY_COMPLETED
+}
@@ -0,0 +1,122 @@
+package com.github.hypfvieh.bluetooth.wrapper;
+
+import org.freedesktop.dbus.types.UInt16;
+
+import java.util.*;
+import java.util.Map.Entry;
+
+/**
+ * Immutable snapshot of all properties of a remote bluetooth device (org.bluez.Device1).
+ *
+ * @see BluetoothDevice#snapshot()
+ * @author hypfvieh
+ */
+public class DeviceSnapshot extends PropertySnapshot {
+
+    DeviceSnapshot(String _dbusPath, String _interfaceName, Map<String, Object> _properties) {
+        super(_dbusPath, _interfaceName, _properties);
+    }
+
+    /**
+     * Bluetooth (MAC) address of the remote device.
+     * @return address, maybe null
+     */
+    public String getAddress() {
+        return getValue("Address", String.class);
+    }
+
+    /**
+     * Remote name of the device, alias if name is not available.
+     * @return name, maybe null
+     */
+    public String getName() {
+        String name = getValue("Name", String.class);
+        return name != null ? name : getAlias();
+    }
+
+    public String getAlias() {
+        return getValue("Alias", String.class);
+    }
+
+    public String getIcon() {
+        return getValue("Icon", String.class);
+    }
+
+    /**
+     * Received signal strength indicator.
+     * @return rssi, null if device was not seen by the latest discovery
+     */
+    public Short getRssi() {
+        return getValue("RSSI", Short.class);
+    }
+
+    public Short getTxPower() {
+        return getValue("TxPower", Short.class);
+    }
+
+    public Integer getAppearance() {
+        return getUnsigned("Appearance");
+    }
+
+    public Integer getBluetoothClass() {
+        return getUnsigned("Class");
+    }
+
+    public String[] getUuids() {
+        return getStringArray("UUIDs");
+    }
+
+    public Boolean isConnected() {
+        return getValue("Connected", Boolean.class);
+    }
+
+    public Boolean isPaired() {
+        return getValue("Paired", Boolean.class);
+    }
+
+    public Boolean isTrusted() {
+        return getValue("Trusted", Boolean.class);
+    }
+
+    public Boolean isBlocked() {
+        return getValue("Blocked", Boolean.class);
+    }
+
+    public Boolean isServicesResolved() {
+        return getValue("ServicesResolved", Boolean.class);
+    }
+
+    /**
+     * Manufacturer specific advertisement data.
+     * @return map of manufacturer id and data, maybe null
+     */
+    public Map<UInt16, byte[]> getManufacturerData() {
+        Map<?, ?> typed = getValue("ManufacturerData", Map.class);
+        if (typed == null) {
+            return null;
+        }
+        Map<UInt16, byte[]> result = new LinkedHashMap<>();
+        for (Entry<?, ?> entry : typed.entrySet()) {
+            if (entry.getKey() instanceof UInt16) {
+                result.put((UInt16) entry.getKey(), toBytes(entry.getValue()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Service advertisement data.
+     * @return map of service uuid and data, maybe null
+     */
+    public Map<String, byte[]> getServiceData() {
+        Map<?, ?> typed = getValue("ServiceData", Map.class);
+        if (typed == null) {
+            return null;
+        }
+        Map<String, byte[]> result = new LinkedHashMap<>();
+        for (Entry<?, ?> entry : typed.entrySet()) {
+            result.put(String.valueOf(entry.getKey()), toBytes(entry.getValue()));
+        }
+        return result;
+    }
+}
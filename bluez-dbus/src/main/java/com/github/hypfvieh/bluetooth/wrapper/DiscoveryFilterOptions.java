@@ -0,0 +1,46 @@
+package com.github.hypfvieh.bluetooth.wrapper;
+
+import com.github.hypfvieh.bluetooth.DiscoveryFilter;
+import org.bluez.exceptions.BluezInvalidArgumentsException;
+import org.freedesktop.dbus.types.Variant;
+
+import java.util.*;
+import java.util.Map.Entry;
+
+/**
+ * Immutable discovery filter for {@link BluetoothAdapter#setDiscoveryFilter(DiscoveryFilterOptions)}.<br>
+ * The filter values are validated and converted to variants once when the object is created.
+ *
+ * @author hypfvieh
+ */
+public final class DiscoveryFilterOptions extends AbstractVariantOptions {
+
+    /** Empty filter, removes a previously set filter. */
+    public static final DiscoveryFilterOptions NONE = new DiscoveryFilterOptions(Map.of());
+
+    private DiscoveryFilterOptions(Map<String, Variant<?>> _variants) {
+        super(_variants);
+    }
+
+    /**
+     * Create a filter using the given values.
+     *
+     * @param _filter filter values, the value class has to match {@link DiscoveryFilter#getValueClass()}
+     * @return filter
+     * @throws BluezInvalidArgumentsException if any value is not of the required type
+     */
+    public static DiscoveryFilterOptions of(Map<DiscoveryFilter, Object> _filter) throws BluezInvalidArgumentsException {
+        Map<String, Variant<?>> filters = new LinkedHashMap<>();
+        for (Entry<DiscoveryFilter, Object> entry : _filter.entrySet()) {
+            if (!entry.getKey().getValueClass().isInstance(entry.getValue())) {
+                throw new BluezInvalidArgumentsException("Filter value not of required type " + entry.getKey().getValueClass());
+            }
+            if (entry.getValue() instanceof Enum<?>) {
+                filters.put(entry.getKey().name(), new Variant<>(entry.getValue().toString()));
+            } else {
+                filters.put(entry.getKey().name(), new Variant<>(entry.getValue()));
+            }
+        }
+        return filters.isEmpty() ? NONE : new DiscoveryFilterOptions(filters);
+    }
+}
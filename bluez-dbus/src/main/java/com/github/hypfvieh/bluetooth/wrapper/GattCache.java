@@ -0,0 +1,503 @@
+package com.github.hypfvieh.bluetooth.wrapper;
+
+import com.github.hypfvieh.DbusHelper;
+import org.bluez.Device1;
+import org.bluez.GattCharacteristic1;
+import org.bluez.GattDescriptor1;
+import org.bluez.GattService1;
+import org.freedesktop.dbus.connections.impl.DBusConnection;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.types.Variant;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent cache of the GATT database layout (services, characteristics and descriptors) of remote devices.<br>
+ * <br>
+ * The layout of each device is stored by {@link BluetoothAddress} in a compact binary file: object path names,
+ * 128-bit UUIDs, the primary flag of services and the flags of characteristics.
+ * After a reconnect or a restart, {@link #restore(BluetoothDevice)} rebuilds the wrapper objects from the cache
+ * instead of introspecting every service and characteristic.<br>
+ * A cached layout is validated using a single ObjectManager.GetManagedObjects call. It is only used if bluez reports
+ * ServicesResolved and the service, characteristic and descriptor objects published by bluez (node names, UUIDs
+ * and flags) match the cached layout. Otherwise the entry is dropped and the tree has to be discovered again.
+ *
+ * <pre>
+ * GattCache cache = new GattCache(Path.of("gatt.cache"));
+ * cache.load();
+ * cache.resolve(device); // restore from cache or discover and store
+ * cache.save();
+ * </pre>
+ *
+ * @author hypfvieh
+ */
+public final class GattCache {
+
+    private static final int MAGIC = 0x47415454; // "GATT"
+    private static final int VERSION = 1;
+
+    /** Characteristic flags stored as bit mask, the position in this list is the bit number. */
+    private static final List<String> KNOWN_FLAGS = List.of("broadcast", "read", "write-without-response", "write",
+        "notify", "indicate", "authenticated-signed-writes", "reliable-write", "writable-auxiliaries",
+        "encrypt-read", "encrypt-write", "encrypt-authenticated-read", "encrypt-authenticated-write",
+        "secure-read", "secure-write", "extended-properties", "encrypt-notify", "encrypt-indicate",
+        "encrypt-authenticated-notify", "encrypt-authenticated-indicate", "authorize");
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final Path file;
+    private final Map<BluetoothAddress, List<ServiceEntry>> layoutByAddress = new ConcurrentHashMap<>();
+
+    public GattCache(Path _file) {
+        file = Objects.requireNonNull(_file, "File required");
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Load the cache file, replacing all entries of this cache.
+     * A missing file results in an empty cache.
+     *
+     * @throws IOException if file could not be read or has an invalid format
+     */
+    public synchronized void load() throws IOException {
+        Map<BluetoothAddress, List<ServiceEntry>> loaded = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readUnsignedByte() != VERSION) {
+                throw new IOException("Unsupported GATT cache file: " + file);
+            }
+            int devices = in.readInt();
+            for (int i = 0; i < devices; i++) {
+                BluetoothAddress address = BluetoothAddress.of(in.readLong());
+                loaded.put(address, readServices(in));
+            }
+        } catch (NoSuchFileException _ex) {
+            logger.debug("GATT cache file {} does not exist", file);
+        }
+        layoutByAddress.clear();
+        layoutByAddress.putAll(loaded);
+    }
+
+    /**
+     * Write all entries to the cache file.
+     * The file is written to a temporary file first and replaced afterwards.
+     *
+     * @throws IOException if file could not be written
+     */
+    public synchronized void save() throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            Map<BluetoothAddress, List<ServiceEntry>> snapshot = new TreeMap<>(layoutByAddress);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeByte(VERSION);
+                out.writeInt(snapshot.size());
+                for (Map.Entry<BluetoothAddress, List<ServiceEntry>> entry : snapshot.entrySet()) {
+                    out.writeLong(entry.getKey().toLong());
+                    writeServices(out, entry.getValue());
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Returns true if a layout is cached for the given address.
+     * @param _address address
+     * @return true if cached
+     */
+    public boolean contains(BluetoothAddress _address) {
+        return _address != null && layoutByAddress.containsKey(_address);
+    }
+
+    /**
+     * Remove the cached layout of the given address.
+     * @param _address address
+     */
+    public void invalidate(BluetoothAddress _address) {
+        if (_address != null) {
+            layoutByAddress.remove(_address);
+        }
+    }
+
+    /**
+     * Store the current GATT layout of the given device.<br>
+     * Services are discovered if this was not done before.
+     *
+     * @param _device device
+     * @return true if layout was stored, false if device address or any BluetoothUuid is unknown
+     */
+    public boolean store(BluetoothDevice _device) {
+        BluetoothAddress address = _device.getBluetoothAddress();
+        if (address == null) {
+            return false;
+        }
+        List<ServiceEntry> services = new ArrayList<>();
+        for (BluetoothGattService service : _device.getGattServices()) {
+            List<CharacteristicEntry> characteristics = new ArrayList<>();
+            for (BluetoothGattCharacteristic characteristic : service.getGattCharacteristics()) {
+                List<DescriptorEntry> descriptors = new ArrayList<>();
+                for (BluetoothGattDescriptor descriptor : characteristic.getGattDescriptors()) {
+                    BluetoothUuid uuid = BluetoothUuid.tryParse(descriptor.getUuid());
+                    if (uuid == null) {
+                        return false;
+                    }
+                    descriptors.add(new DescriptorEntry(nodeName(descriptor), uuid));
+                }
+                BluetoothUuid uuid = BluetoothUuid.tryParse(characteristic.getUuid());
+                if (uuid == null) {
+                    return false;
+                }
+                characteristics.add(new CharacteristicEntry(nodeName(characteristic), uuid, toFlagMask(characteristic.getFlags()), descriptors));
+            }
+            BluetoothUuid uuid = BluetoothUuid.tryParse(service.getUuid());
+            if (uuid == null) {
+                return false;
+            }
+            services.add(new ServiceEntry(nodeName(service), uuid, Boolean.TRUE.equals(service.isPrimary()), characteristics));
+        }
+        layoutByAddress.put(address, List.copyOf(services));
+        return true;
+    }
+
+    /**
+     * Rebuild the GATT services, characteristics and descriptors of the given device from the cache.<br>
+     * The cached layout is validated against a single ObjectManager.GetManagedObjects call: it is only used if
+     * the device reports ServicesResolved and the node names, UUIDs, primary flags and characteristic flags of all
+     * published service, characteristic and descriptor objects match the cached layout.
+     * A mismatching entry is removed from the cache.
+     * <br>
+     * If the property cache of the device is enabled, the property caches of the restored objects are seeded
+     * with the properties received by this call.
+     *
+     * @param _device device
+     * @return true if the tree was restored, false if there is no valid cached layout
+     */
+    public boolean restore(BluetoothDevice _device) {
+        BluetoothAddress address = _device.getBluetoothAddress();
+        List<ServiceEntry> services = address != null ? layoutByAddress.get(address) : null;
+        if (services == null) {
+            return false;
+        }
+
+        long generation = _device.getGattServicesGeneration();
+        DBusConnection connection = _device.getDbusConnection();
+        String devicePath = _device.getDbusPath();
+
+        SortedMap<String, Map<String, Map<String, Variant<?>>>> objects;
+        try {
+            objects = ManagedObjectTree.queryManagedObjects(connection);
+        } catch (DBusException _ex) {
+            logger.debug("Unable to validate cached GATT layout of {}", address, _ex);
+            return false;
+        }
+
+        Map<String, Variant<?>> deviceProps = getInterfaceProperties(objects, devicePath, Device1.class);
+        Variant<?> resolved = deviceProps == null ? null : deviceProps.get("ServicesResolved");
+        if (resolved == null || !Boolean.TRUE.equals(resolved.getValue())) {
+            return false;
+        }
+        if (!matchesPublishedObjects(objects, devicePath, services)) {
+            logger.debug("Cached GATT layout of {} does not match the objects published by bluez", address);
+            layoutByAddress.remove(address);
+            return false;
+        }
+
+        boolean propertyCache = _device.isPropertyCacheEnabled();
+        long maxAge = _device.getPropertyCacheMaxAge();
+
+        Map<BluetoothUuid, BluetoothGattService> serviceMap = new LinkedHashMap<>();
+        for (ServiceEntry serviceEntry : services) {
+            String servicePath = devicePath + "/" + serviceEntry.node;
+            GattService1 rawService = DbusHelper.getRemoteObject(connection, servicePath, GattService1.class);
+            if (rawService == null) {
+                layoutByAddress.remove(address);
+                return false;
+            }
+            BluetoothGattService service = new BluetoothGattService(rawService, _device, servicePath, connection);
+
+            Map<BluetoothUuid, BluetoothGattCharacteristic> characteristicMap = new LinkedHashMap<>();
+            for (CharacteristicEntry charEntry : serviceEntry.characteristics) {
+                String charPath = servicePath + "/" + charEntry.node;
+                GattCharacteristic1 rawChar = DbusHelper.getRemoteObject(connection, charPath, GattCharacteristic1.class);
+                if (rawChar == null) {
+                    layoutByAddress.remove(address);
+                    return false;
+                }
+                BluetoothGattCharacteristic characteristic = new BluetoothGattCharacteristic(rawChar, service, charPath, connection);
+
+                Map<BluetoothUuid, BluetoothGattDescriptor> descriptorMap = new LinkedHashMap<>();
+                for (DescriptorEntry descEntry : charEntry.descriptors) {
+                    String descPath = charPath + "/" + descEntry.node;
+                    GattDescriptor1 rawDesc = DbusHelper.getRemoteObject(connection, descPath, GattDescriptor1.class);
+                    if (rawDesc == null) {
+                        layoutByAddress.remove(address);
+                        return false;
+                    }
+                    BluetoothGattDescriptor descriptor = new BluetoothGattDescriptor(rawDesc, characteristic, descPath, connection);
+                    if (propertyCache) {
+                        descriptor.enablePropertyCache(maxAge, getInterfaceProperties(objects, descPath, GattDescriptor1.class));
+                    }
+                    descriptorMap.put(descEntry.uuid, descriptor);
+                }
+                characteristic.setGattDescriptors(descriptorMap, characteristic.getGattDescriptorsGeneration());
+                if (propertyCache) {
+                    characteristic.enablePropertyCache(maxAge, getInterfaceProperties(objects, charPath, GattCharacteristic1.class));
+                }
+                characteristicMap.put(charEntry.uuid, characteristic);
+            }
+            service.setGattCharacteristics(characteristicMap, service.getGattCharacteristicsGeneration());
+            if (propertyCache) {
+                service.enablePropertyCache(maxAge, getInterfaceProperties(objects, servicePath, GattService1.class));
+            }
+            serviceMap.put(serviceEntry.uuid, service);
+        }
+
+        _device.setGattServices(serviceMap, generation);
+        return true;
+    }
+
+    /**
+     * Compare the cached services, characteristics and descriptors with the GATT objects published below the device.
+     * @return true if every cached object is published with the cached UUID and flags and no other GATT object exists
+     */
+    private static boolean matchesPublishedObjects(SortedMap<String, Map<String, Map<String, Variant<?>>>> _objects, String _devicePath, List<ServiceEntry> _services) {
+        int expected = 0;
+        for (ServiceEntry service : _services) {
+            String servicePath = _devicePath + "/" + service.node;
+            Map<String, Variant<?>> serviceProps = getInterfaceProperties(_objects, servicePath, GattService1.class);
+            if (serviceProps == null || !service.uuid.equals(getUuid(serviceProps))
+                    || service.primary != Boolean.TRUE.equals(getValue(serviceProps, "Primary"))) {
+                return false;
+            }
+            expected++;
+            for (CharacteristicEntry characteristic : service.characteristics) {
+                String charPath = servicePath + "/" + characteristic.node;
+                Map<String, Variant<?>> charProps = getInterfaceProperties(_objects, charPath, GattCharacteristic1.class);
+                if (charProps == null || !characteristic.uuid.equals(getUuid(charProps))
+                        || characteristic.flags != toFlagMask(toStringList(getValue(charProps, "Flags")))) {
+                    return false;
+                }
+                expected++;
+                for (DescriptorEntry descriptor : characteristic.descriptors) {
+                    Map<String, Variant<?>> descProps = getInterfaceProperties(_objects, charPath + "/" + descriptor.node, GattDescriptor1.class);
+                    if (descProps == null || !descriptor.uuid.equals(getUuid(descProps))) {
+                        return false;
+                    }
+                    expected++;
+                }
+            }
+        }
+
+        // objects not contained in the cached layout
+        String prefix = _devicePath + "/";
+        int published = 0;
+        for (Map<String, Map<String, Variant<?>>> interfaces : _objects.subMap(prefix, prefix + Character.MAX_VALUE).values()) {
+            if (interfaces.containsKey(GattService1.class.getName()) || interfaces.containsKey(GattCharacteristic1.class.getName())
+                    || interfaces.containsKey(GattDescriptor1.class.getName())) {
+                published++;
+            }
+        }
+        return published == expected;
+    }
+
+    private static Map<String, Variant<?>> getInterfaceProperties(Map<String, Map<String, Map<String, Variant<?>>>> _objects, String _path, Class<?> _interface) {
+        Map<String, Map<String, Variant<?>>> interfaces = _objects.get(_path);
+        return interfaces == null ? null : interfaces.get(_interface.getName());
+    }
+
+    private static Object getValue(Map<String, Variant<?>> _properties, String _name) {
+        Variant<?> variant = _properties.get(_name);
+        return variant == null ? null : variant.getValue();
+    }
+
+    private static BluetoothUuid getUuid(Map<String, Variant<?>> _properties) {
+        Object uuid = getValue(_properties, "UUID");
+        return uuid instanceof String ? BluetoothUuid.tryParse((String) uuid) : null;
+    }
+
+    private static List<String> toStringList(Object _value) {
+        List<String> result = new ArrayList<>();
+        if (_value instanceof Collection) {
+            for (Object o : (Collection<?>) _value) {
+                result.add(String.valueOf(o));
+            }
+        } else if (_value instanceof String[]) {
+            result.addAll(Arrays.asList((String[]) _value));
+        }
+        return result;
+    }
+
+    /**
+     * Restore the GATT tree of the given device from the cache or discover it and update the cache.
+     * @param _device device
+     * @return true if tree was restored from cache, false if it was discovered
+     */
+    public boolean resolve(BluetoothDevice _device) {
+        if (restore(_device)) {
+            return true;
+        }
+        _device.refreshGattServices();
+        store(_device);
+        return false;
+    }
+
+    /**
+     * Flags of a characteristic as stored in the cache.
+     * @param _address device address
+     * @param _serviceUuid service UUID
+     * @param _characteristicUuid characteristic UUID
+     * @return flags, null if not cached
+     */
+    public List<String> getCharacteristicFlags(BluetoothAddress _address, String _serviceUuid, String _characteristicUuid) {
+        List<ServiceEntry> services = _address != null ? layoutByAddress.get(_address) : null;
+        BluetoothUuid serviceUuid = BluetoothUuid.tryParse(_serviceUuid);
+        BluetoothUuid charUuid = BluetoothUuid.tryParse(_characteristicUuid);
+        if (services == null || serviceUuid == null || charUuid == null) {
+            return null;
+        }
+        for (ServiceEntry service : services) {
+            if (service.uuid.equals(serviceUuid)) {
+                for (CharacteristicEntry characteristic : service.characteristics) {
+                    if (characteristic.uuid.equals(charUuid)) {
+                        return fromFlagMask(characteristic.flags);
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String nodeName(AbstractBluetoothObject _object) {
+        String path = _object.getDbusPath();
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    private static int toFlagMask(List<String> _flags) {
+        int mask = 0;
+        if (_flags != null) {
+            for (String flag : _flags) {
+                int bit = KNOWN_FLAGS.indexOf(flag);
+                if (bit >= 0) {
+                    mask |= 1 << bit;
+                }
+            }
+        }
+        return mask;
+    }
+
+    private static List<String> fromFlagMask(int _mask) {
+        List<String> flags = new ArrayList<>();
+        for (int bit = 0; bit < KNOWN_FLAGS.size(); bit++) {
+            if ((_mask & 1 << bit) != 0) {
+                flags.add(KNOWN_FLAGS.get(bit));
+            }
+        }
+        return flags;
+    }
+
+    private static void writeServices(DataOutputStream _out, List<ServiceEntry> _services) throws IOException {
+        _out.writeShort(_services.size());
+        for (ServiceEntry service : _services) {
+            _out.writeUTF(service.node);
+            writeUuid(_out, service.uuid);
+            _out.writeBoolean(service.primary);
+            _out.writeShort(service.characteristics.size());
+            for (CharacteristicEntry characteristic : service.characteristics) {
+                _out.writeUTF(characteristic.node);
+                writeUuid(_out, characteristic.uuid);
+                _out.writeInt(characteristic.flags);
+                _out.writeShort(characteristic.descriptors.size());
+                for (DescriptorEntry descriptor : characteristic.descriptors) {
+                    _out.writeUTF(descriptor.node);
+                    writeUuid(_out, descriptor.uuid);
+                }
+            }
+        }
+    }
+
+    private static List<ServiceEntry> readServices(DataInputStream _in) throws IOException {
+        int serviceCount = _in.readUnsignedShort();
+        List<ServiceEntry> services = new ArrayList<>(serviceCount);
+        for (int s = 0; s < serviceCount; s++) {
+            String serviceNode = _in.readUTF();
+            BluetoothUuid serviceUuid = readUuid(_in);
+            boolean primary = _in.readBoolean();
+            int charCount = _in.readUnsignedShort();
+            List<CharacteristicEntry> characteristics = new ArrayList<>(charCount);
+            for (int c = 0; c < charCount; c++) {
+                String charNode = _in.readUTF();
+                BluetoothUuid charUuid = readUuid(_in);
+                int flags = _in.readInt();
+                int descCount = _in.readUnsignedShort();
+                List<DescriptorEntry> descriptors = new ArrayList<>(descCount);
+                for (int d = 0; d < descCount; d++) {
+                    descriptors.add(new DescriptorEntry(_in.readUTF(), readUuid(_in)));
+                }
+                characteristics.add(new CharacteristicEntry(charNode, charUuid, flags, List.copyOf(descriptors)));
+            }
+            services.add(new ServiceEntry(serviceNode, serviceUuid, primary, List.copyOf(characteristics)));
+        }
+        return List.copyOf(services);
+    }
+
+    private static void writeUuid(DataOutputStream _out, BluetoothUuid _uuid) throws IOException {
+        _out.writeLong(_uuid.getMostSignificantBits());
+        _out.writeLong(_uuid.getLeastSignificantBits());
+    }
+
+    private static BluetoothUuid readUuid(DataInputStream _in) throws IOException {
+        return BluetoothUuid.of(_in.readLong(), _in.readLong());
+    }
+
+    private static final class ServiceEntry {
+        private final String node;
+        private final BluetoothUuid uuid;
+        private final boolean primary;
+        private final List<CharacteristicEntry> characteristics;
+
+        ServiceEntry(String _node, BluetoothUuid _uuid, boolean _primary, List<CharacteristicEntry> _characteristics) {
+            node = _node;
+            uuid = _uuid;
+            primary = _primary;
+            characteristics = _characteristics;
+        }
+    }
+
+    private static final class CharacteristicEntry {
+        private final String node;
+        private final BluetoothUuid uuid;
+        private final int flags;
+        private final List<DescriptorEntry> descriptors;
+
+        CharacteristicEntry(String _node, BluetoothUuid _uuid, int _flags, List<DescriptorEntry> _descriptors) {
+            node = _node;
+            uuid = _uuid;
+            flags = _flags;
+            descriptors = _descriptors;
+        }
+    }
+
+    private static final class DescriptorEntry {
+        private final String node;
+        private final BluetoothUuid uuid;
+
+        DescriptorEntry(String _node, BluetoothUuid _uuid) {
+            node = _node;
+            uuid = _uuid;
+        }
+    }
+}
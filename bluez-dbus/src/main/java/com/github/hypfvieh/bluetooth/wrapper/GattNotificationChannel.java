@@ -0,0 +1,232 @@
+package com.github.hypfvieh.bluetooth.wrapper;
+
+import com.github.hypfvieh.DbusHelper;
+import org.bluez.datatypes.TwoTuple;
+import org.bluez.exceptions.*;
+import org.freedesktop.dbus.FileDescriptor;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+import org.freedesktop.dbus.types.UInt16;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Receives notifications of a GATT characteristic.<br>
+ * <br>
+ * If supported by bluez and the characteristic, the notifications are received using the file descriptor returned
+ * by AcquireNotify. Each notification is read directly into a {@link ByteBuffer} owned by the reader thread,
+ * no DBus signal has to be received or unmarshalled. The buffer is reused for every notification, so handlers have
+ * to copy the value if it is needed after the handler returned.<br>
+ * Otherwise StartNotify is used and values are received by a notification listener of the characteristic
+ * (see {@link BluetoothGattCharacteristic#addNotificationListener(GattNotificationHandler)}).
+ * <br>
+ * {@link #getCloseFuture()} is completed when the channel is closed. If bluez closed the file descriptor
+ * (e.g. after a link loss), it is completed exceptionally.
+ *
+ * @author hypfvieh
+ */
+public final class GattNotificationChannel implements Closeable {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final BluetoothGattCharacteristic characteristic;
+    private final GattNotificationHandler handler;
+
+    private final FileChannel channel;
+    private final int mtu;
+    private final GattNotificationHandler signalListener;
+
+    private volatile boolean open = true;
+    private final CompletableFuture<Void> closeFuture = new CompletableFuture<>();
+
+    private GattNotificationChannel(BluetoothGattCharacteristic _characteristic, GattNotificationHandler _handler,
+            FileChannel _channel, int _mtu) {
+        characteristic = _characteristic;
+        handler = _handler;
+        channel = _channel;
+        mtu = _mtu;
+        signalListener = _channel == null ? this::handleSignal : null;
+    }
+
+    /**
+     * Open a notification channel, using AcquireNotify if possible and StartNotify otherwise.
+     */
+    static GattNotificationChannel open(BluetoothGattCharacteristic _characteristic, GattNotificationHandler _handler)
+            throws BluezFailedException, BluezInProgressException, BluezNotSupportedException, BluezNotPermittedException, BluezNotConnectedException {
+
+        GattNotificationChannel acquired = tryAcquire(_characteristic, _handler);
+        if (acquired != null) {
+            return acquired;
+        }
+
+        GattNotificationChannel notifyChannel = new GattNotificationChannel(_characteristic, _handler, null, -1);
+        try {
+            _characteristic.addNotificationListener(notifyChannel.signalListener);
+        } catch (DBusException _ex) {
+            throw new BluezFailedException("Unable to register notification handler for " + _characteristic.getDbusPath() + ": " + _ex.getMessage());
+        }
+        try {
+            _characteristic.startNotify();
+        } catch (BluezFailedException | BluezInProgressException | BluezNotSupportedException | BluezNotPermittedException | BluezNotConnectedException _ex) {
+            _characteristic.removeNotificationListener(notifyChannel.signalListener);
+            throw _ex;
+        }
+        return notifyChannel;
+    }
+
+    private static GattNotificationChannel tryAcquire(BluetoothGattCharacteristic _characteristic, GattNotificationHandler _handler) {
+        Logger logger = LoggerFactory.getLogger(GattNotificationChannel.class);
+        if (!DbusHelper.isFileDescriptorSupported()) {
+            logger.debug("File descriptors not supported, using StartNotify for {}", _characteristic.getDbusPath());
+            return null;
+        }
+
+        TwoTuple<FileDescriptor, UInt16> acquired;
+        try {
+            acquired = _characteristic.getRawGattCharacteristic().AcquireNotify(Map.of());
+        } catch (BluezFailedException | BluezNotSupportedException | DBusExecutionException _ex) {
+            logger.debug("AcquireNotify not available for {}, using StartNotify", _characteristic.getDbusPath(), _ex);
+            return null;
+        }
+        if (acquired == null || acquired.getFirstValue() == null) {
+            return null;
+        }
+
+        java.io.FileDescriptor fd = DbusHelper.toJavaFileDescriptor(acquired.getFirstValue());
+        if (fd == null) {
+            return null;
+        }
+        int mtu = acquired.getSecondValue() != null ? acquired.getSecondValue().intValue() : 0;
+        if (mtu <= 0) {
+            mtu = BluetoothGattCharacteristic.DEFAULT_ATT_PAYLOAD_SIZE;
+        }
+
+        @SuppressWarnings("resource")
+        FileChannel channel = new FileInputStream(fd).getChannel();
+        GattNotificationChannel result = new GattNotificationChannel(_characteristic, _handler, channel, mtu);
+        Thread reader = new Thread(result::readLoop, "GattNotify-" + _characteristic.getDbusPath());
+        reader.setDaemon(true);
+        reader.start();
+        return result;
+    }
+
+    /**
+     * Returns true if notifications are received using AcquireNotify, false if StartNotify is used.
+     * @return true if acquired
+     */
+    public boolean isAcquired() {
+        return channel != null;
+    }
+
+    /**
+     * MTU returned by AcquireNotify.<br>
+     * If bluez does not report an MTU, the same default as for writes (20 bytes) is returned.
+     * The receive buffer is never smaller than the maximum attribute value length, so notifications
+     * exceeding the reported MTU are not truncated.
+     * @return mtu, -1 if StartNotify is used
+     */
+    public int getMtu() {
+        return mtu;
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    public BluetoothGattCharacteristic getCharacteristic() {
+        return characteristic;
+    }
+
+    /**
+     * Future completed when this channel is closed.<br>
+     * Completed normally if {@link #close()} was called, exceptionally with an {@link IOException}
+     * if the acquired file descriptor was closed by bluez or could not be read anymore.
+     *
+     * @return future, never null
+     */
+    public CompletableFuture<Void> getCloseFuture() {
+        return closeFuture;
+    }
+
+    /**
+     * Stop receiving notifications.<br>
+     * Closes the acquired file descriptor or calls StopNotify.
+     */
+    @Override
+    public void close() {
+        close(null);
+    }
+
+    private synchronized void close(IOException _cause) {
+        if (!open) {
+            return;
+        }
+        open = false;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException _ex) {
+                logger.debug("Error while closing notification channel of {}", characteristic.getDbusPath(), _ex);
+            }
+        } else {
+            characteristic.removeNotificationListener(signalListener);
+            try {
+                characteristic.stopNotify();
+            } catch (BluezFailedException | DBusExecutionException _ex) {
+                logger.debug("Error while stopping notifications of {}", characteristic.getDbusPath(), _ex);
+            }
+        }
+        if (_cause != null) {
+            closeFuture.completeExceptionally(_cause);
+        } else {
+            closeFuture.complete(null);
+        }
+    }
+
+    private void readLoop() {
+        // only this thread reads, so a single buffer is sufficient
+        ByteBuffer buffer = ByteBuffer.allocate(Math.max(mtu, BluetoothGattCharacteristic.MAX_ATT_VALUE_SIZE));
+        IOException failure = null;
+        try {
+            while (open) {
+                buffer.clear();
+                if (channel.read(buffer) < 0) {
+                    failure = new EOFException("Notification channel of " + characteristic.getDbusPath() + " was closed by bluez");
+                    break;
+                }
+                buffer.flip();
+                dispatch(buffer);
+            }
+        } catch (IOException _ex) {
+            if (open) {
+                logger.debug("Notification channel of {} failed", characteristic.getDbusPath(), _ex);
+                failure = _ex;
+            }
+        } finally {
+            close(failure);
+        }
+    }
+
+    private void handleSignal(ByteBuffer _value) {
+        if (open) {
+            dispatch(_value);
+        }
+    }
+
+    private void dispatch(ByteBuffer _value) {
+        try {
+            handler.onNotification(_value);
+        } catch (RuntimeException _ex) {
+            logger.warn("Error in notification handler of {}", characteristic.getDbusPath(), _ex);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.github.hypfvieh.bluetooth.wrapper;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Receives values of a GATT characteristic sent by notifications or indications.
+ *
+ * @see BluetoothGattCharacteristic#openNotificationChannel(GattNotificationHandler)
+ * @author hypfvieh
+ */
+@FunctionalInterface
+public interface GattNotificationHandler {
+
+    /**
+     * Called for every received notification.<br>
+     * The buffer is reused after this method returns, copy the content if it is needed later.
+     *
+     * @param _value buffer containing the received value (position 0, limit = length of value)
+     */
+    void onNotification(ByteBuffer _value);
+}
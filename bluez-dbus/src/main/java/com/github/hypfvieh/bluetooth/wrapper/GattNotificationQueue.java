@@ -0,0 +1,297 @@
+package com.github.hypfvieh.bluetooth.wrapper;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded ring buffer decoupling the receiving of GATT notifications from their consumer.<br>
+ * <br>
+ * The queue is a {@link GattNotificationHandler}, so it can be used with
+ * {@link BluetoothGattCharacteristic#addNotificationListener(GattNotificationHandler)} or
+ * {@link BluetoothGattCharacteristic#openNotificationChannel(GattNotificationHandler)}.
+ * Every received value is copied into the queue, the consumer takes the values using
+ * {@link #poll()}, {@link #poll(long, TimeUnit)} or {@link #take()}.<br>
+ * If the consumer falls behind, the configured {@link NotificationOverflowPolicy} decides
+ * which notifications are discarded. The counters can be used to size the queue.<br>
+ * <br>
+ * Values are added by the thread delivering the notification. For listeners added using
+ * {@link BluetoothGattCharacteristic#addNotificationListener(GattNotificationHandler)} this is the signal thread
+ * of the DBus connection, which also delivers all other signals of the connection. With
+ * {@link NotificationOverflowPolicy#BLOCK} this thread waits at most the configured maximum block time
+ * (default {@value #DEFAULT_MAX_BLOCK_MILLIS} ms) for free space, the value is dropped afterwards.
+ *
+ * @author hypfvieh
+ */
+public final class GattNotificationQueue implements GattNotificationHandler, Closeable {
+
+    /** Default maximum time in milliseconds a producer waits for free space using {@link NotificationOverflowPolicy#BLOCK} */
+    public static final long DEFAULT_MAX_BLOCK_MILLIS = 100;
+
+    private final NotificationOverflowPolicy policy;
+    private final byte[][] ring;
+    private final long maxBlockNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    private final AtomicLong queuedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    private int head;
+    private int size;
+    private int peakSize;
+    private boolean closed;
+
+    public GattNotificationQueue(int _capacity, NotificationOverflowPolicy _policy) {
+        this(_capacity, _policy, DEFAULT_MAX_BLOCK_MILLIS);
+    }
+
+    /**
+     * Create a new queue.
+     *
+     * @param _capacity maximum number of queued values
+     * @param _policy policy applied when the queue is full
+     * @param _maxBlockMillis maximum time in milliseconds the producer waits for free space
+     *      using {@link NotificationOverflowPolicy#BLOCK}, the value is dropped when elapsed
+     */
+    public GattNotificationQueue(int _capacity, NotificationOverflowPolicy _policy, long _maxBlockMillis) {
+        if (_capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be greater than 0");
+        }
+        if (_maxBlockMillis < 0) {
+            throw new IllegalArgumentException("Maximum block time must not be negative");
+        }
+        policy = Objects.requireNonNull(_policy, "Policy required");
+        ring = new byte[_capacity][];
+        maxBlockNanos = TimeUnit.MILLISECONDS.toNanos(_maxBlockMillis);
+    }
+
+    /**
+     * Adds a copy of the received value to the queue, applying the overflow policy if the queue is full.<br>
+     * Values received after {@link #close()} are dropped.
+     *
+     * @param _value received value
+     */
+    @Override
+    public void onNotification(ByteBuffer _value) {
+        byte[] copy = new byte[_value.remaining()];
+        _value.duplicate().get(copy);
+        offer(copy);
+    }
+
+    private void offer(byte[] _value) {
+        lock.lock();
+        try {
+            // checked first, a closed queue must neither evict nor overwrite queued values
+            if (closed) {
+                droppedCount.incrementAndGet();
+                return;
+            }
+            if (size == ring.length) {
+                switch (policy) {
+                    case DROP_OLDEST -> {
+                        ring[head] = null;
+                        head = (head + 1) % ring.length;
+                        size--;
+                        droppedCount.incrementAndGet();
+                    }
+                    case DROP_NEWEST -> {
+                        droppedCount.incrementAndGet();
+                        return;
+                    }
+                    case COALESCE_LATEST -> {
+                        ring[(head + size - 1) % ring.length] = _value;
+                        queuedCount.incrementAndGet();
+                        droppedCount.incrementAndGet();
+                        notEmpty.signal();
+                        return;
+                    }
+                    case BLOCK -> {
+                        // the queue may have been closed while waiting
+                        if (!awaitNotFull() || closed) {
+                            droppedCount.incrementAndGet();
+                            return;
+                        }
+                    }
+                }
+            }
+            ring[(head + size) % ring.length] = _value;
+            size++;
+            peakSize = Math.max(peakSize, size);
+            queuedCount.incrementAndGet();
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait until the queue has free space, is closed or the maximum block time has elapsed.
+     * Has to be called while holding the lock.
+     * @return false if the queue is still full
+     */
+    private boolean awaitNotFull() {
+        long nanos = maxBlockNanos;
+        try {
+            while (size == ring.length && !closed) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+        } catch (InterruptedException _ex) {
+            Thread.currentThread().interrupt();
+            return size < ring.length || closed;
+        }
+        return true;
+    }
+
+    /**
+     * Take the oldest queued value without waiting.
+     * @return value or null if queue is empty
+     */
+    public byte[] poll() {
+        lock.lock();
+        try {
+            return size == 0 ? null : dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Take the oldest queued value, waiting up to the given time if the queue is empty.
+     *
+     * @param _timeout time to wait
+     * @param _unit unit of timeout
+     * @return value or null if timeout elapsed or queue was closed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public byte[] poll(long _timeout, TimeUnit _unit) throws InterruptedException {
+        long nanos = _unit.toNanos(_timeout);
+        lock.lockInterruptibly();
+        try {
+            while (size == 0) {
+                if (closed || nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Take the oldest queued value, waiting until a value is available.
+     *
+     * @return value or null if queue was closed and all values have been taken
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public byte[] take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (size == 0) {
+                if (closed) {
+                    return null;
+                }
+                notEmpty.await();
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private byte[] dequeue() {
+        byte[] value = ring[head];
+        ring[head] = null;
+        head = (head + 1) % ring.length;
+        size--;
+        notFull.signal();
+        return value;
+    }
+
+    /**
+     * Number of values currently waiting in the queue.
+     * @return size
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Highest number of values which were waiting in the queue at the same time.
+     * @return peak size
+     */
+    public int getPeakSize() {
+        lock.lock();
+        try {
+            return peakSize;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getCapacity() {
+        return ring.length;
+    }
+
+    public NotificationOverflowPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Total number of values added to the queue (including values coalesced with {@link NotificationOverflowPolicy#COALESCE_LATEST}).
+     * @return count
+     */
+    public long getQueuedCount() {
+        return queuedCount.get();
+    }
+
+    /**
+     * Total number of values discarded because the queue was full or closed.
+     * @return count
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public boolean isClosed() {
+        lock.lock();
+        try {
+            return closed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Close the queue.<br>
+     * Blocked producers and consumers are released, values still queued can be taken.
+     * The queue has to be removed from the notification source separately.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
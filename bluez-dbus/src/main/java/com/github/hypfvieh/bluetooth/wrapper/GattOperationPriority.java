@@ -0,0 +1,13 @@
+package com.github.hypfvieh.bluetooth.wrapper;
+
+/**
+ * Priority of an operation submitted to a {@link GattOperationQueue}.<br>
+ * Operations with higher priority are executed first, operations with the same priority in submission order.
+ *
+ * @author hypfvieh
+ */
+public enum GattOperationPriority {
+    HIGH,
+    NORMAL,
+    LOW
+}
@@ -0,0 +1,347 @@
+package com.github.hypfvieh.bluetooth.wrapper;
+
+import org.bluez.exceptions.BluezInProgressException;
+import org.bluez.exceptions.BluezNotReadyException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Serializes the GATT operations (reads, writes, descriptor operations) of one {@link BluetoothDevice}.<br>
+ * <br>
+ * bluez rejects concurrent GATT operations on a device with InProgress. This queue executes one operation
+ * at a time and starts the next one as soon as the previous has completed. Operations failing with
+ * InProgress or NotReady are retried with exponential backoff and jitter.<br>
+ * Every attempt is limited by a timeout, so a lost reply does not stall the queue of the device.<br>
+ * Operations are executed asynchronously using the DBus worker threads, no thread is blocked while waiting.
+ * Every device has its own queue, so operations of different devices are executed in parallel.
+ *
+ * @see BluetoothDevice#getGattOperationQueue()
+ * @author hypfvieh
+ */
+public final class GattOperationQueue {
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final BluetoothDevice device;
+    private final PriorityQueue<Operation<?>> pending = new PriorityQueue<>();
+    private boolean running;
+
+    private volatile int maxRetries = 5;
+    private volatile long initialRetryDelay = 20;
+    private volatile long maxRetryDelay = 1000;
+    private volatile long operationTimeout = 30000;
+
+    GattOperationQueue(BluetoothDevice _device) {
+        device = _device;
+    }
+
+    public BluetoothDevice getDevice() {
+        return device;
+    }
+
+    /**
+     * Maximum number of retries of an operation failing with InProgress or NotReady.
+     * @param _maxRetries retries, 0 to disable retrying
+     */
+    public void setMaxRetries(int _maxRetries) {
+        maxRetries = Math.max(0, _maxRetries);
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * Delay before retrying an operation. The delay is doubled on every retry until the maximum is reached.
+     * @param _initialDelay delay before first retry in milliseconds
+     * @param _maxDelay maximum delay in milliseconds
+     */
+    public void setRetryDelay(long _initialDelay, long _maxDelay) {
+        initialRetryDelay = Math.max(1, _initialDelay);
+        maxRetryDelay = Math.max(initialRetryDelay, _maxDelay);
+    }
+
+    /**
+     * Maximum time a single attempt of an operation may take.<br>
+     * An attempt exceeding this time fails the operation with {@link java.util.concurrent.TimeoutException}
+     * and the next queued operation is started.
+     *
+     * @param _timeout timeout in milliseconds, 0 or less to wait forever
+     */
+    public void setOperationTimeout(long _timeout) {
+        operationTimeout = Math.max(0, _timeout);
+    }
+
+    public long getOperationTimeout() {
+        return operationTimeout;
+    }
+
+    /**
+     * Number of operations waiting for execution (excluding the operation currently executed).
+     * @return count
+     */
+    public int getPendingCount() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * Queue a read of the given characteristic.
+     * @param _characteristic characteristic to read
+     * @param _options options, see {@link BluetoothGattCharacteristic#readValue(Map)}
+     * @param _priority priority
+     * @return future providing the read value
+     */
+    public CompletableFuture<byte[]> readValue(BluetoothGattCharacteristic _characteristic, Map<String, Object> _options, GattOperationPriority _priority) {
+        return submit(_priority, () -> _characteristic.readValueAsync(_options));
+    }
+
+    /**
+     * Queue a write to the given characteristic.
+     * @param _characteristic characteristic to write
+     * @param _value value to write
+     * @param _options options, see {@link BluetoothGattCharacteristic#writeValue(byte[], Map)}
+     * @param _priority priority
+     * @return future completed when the value was written
+     */
+    public CompletableFuture<Void> writeValue(BluetoothGattCharacteristic _characteristic, byte[] _value, Map<String, Object> _options, GattOperationPriority _priority) {
+        return submit(_priority, () -> _characteristic.writeValueAsync(_value, _options));
+    }
+
+    /**
+     * Queue a read of the given descriptor.
+     * @param _descriptor descriptor to read
+     * @param _options options, see {@link BluetoothGattDescriptor#readValue(Map)}
+     * @param _priority priority
+     * @return future providing the read value
+     */
+    public CompletableFuture<byte[]> readValue(BluetoothGattDescriptor _descriptor, Map<String, Object> _options, GattOperationPriority _priority) {
+        return submit(_priority, () -> _descriptor.readValueAsync(_options));
+    }
+
+    /**
+     * Queue a write to the given descriptor.
+     * @param _descriptor descriptor to write
+     * @param _value value to write
+     * @param _options options, see {@link BluetoothGattDescriptor#writeValue(byte[], Map)}
+     * @param _priority priority
+     * @return future completed when the value was written
+     */
+    public CompletableFuture<Void> writeValue(BluetoothGattDescriptor _descriptor, byte[] _value, Map<String, Object> _options, GattOperationPriority _priority) {
+        return submit(_priority, () -> _descriptor.writeValueAsync(_value, _options));
+    }
+
+    /**
+     * Queue a read of the given characteristic using prebuilt options.
+     * @param _characteristic characteristic to read
+     * @param _options options
+     * @param _priority priority
+     * @return future providing the read value
+     */
+    public CompletableFuture<byte[]> readValue(BluetoothGattCharacteristic _characteristic, GattReadOptions _options, GattOperationPriority _priority) {
+        return submit(_priority, () -> _characteristic.readValueAsync(_options));
+    }
+
+    /**
+     * Queue a write to the given characteristic using prebuilt options.
+     * @param _characteristic characteristic to write
+     * @param _value value to write
+     * @param _options options
+     * @param _priority priority
+     * @return future completed when the value was written
+     */
+    public CompletableFuture<Void> writeValue(BluetoothGattCharacteristic _characteristic, byte[] _value, GattWriteOptions _options, GattOperationPriority _priority) {
+        return submit(_priority, () -> _characteristic.writeValueAsync(_value, _options));
+    }
+
+    /**
+     * Queue a read of the given descriptor using prebuilt options.
+     * @param _descriptor descriptor to read
+     * @param _options options
+     * @param _priority priority
+     * @return future providing the read value
+     */
+    public CompletableFuture<byte[]> readValue(BluetoothGattDescriptor _descriptor, GattReadOptions _options, GattOperationPriority _priority) {
+        return submit(_priority, () -> _descriptor.readValueAsync(_options));
+    }
+
+    /**
+     * Queue a write to the given descriptor using prebuilt options.
+     * @param _descriptor descriptor to write
+     * @param _value value to write
+     * @param _options options
+     * @param _priority priority
+     * @return future completed when the value was written
+     */
+    public CompletableFuture<Void> writeValue(BluetoothGattDescriptor _descriptor, byte[] _value, GattWriteOptions _options, GattOperationPriority _priority) {
+        return submit(_priority, () -> _descriptor.writeValueAsync(_value, _options));
+    }
+
+    /**
+     * Queue an operation with {@link GattOperationPriority#NORMAL} priority.
+     * @param <T> result type
+     * @param _operation supplier starting the operation, called once per attempt
+     * @return future completed with the result of the operation
+     */
+    public <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> _operation) {
+        return submit(GattOperationPriority.NORMAL, _operation);
+    }
+
+    /**
+     * Queue an operation.<br>
+     * The supplier is called when the operation is executed and again for every retry.
+     * Cancelling the returned future skips the operation if it was not started yet.
+     *
+     * @param <T> result type
+     * @param _priority priority
+     * @param _operation supplier starting the operation, called once per attempt
+     * @return future completed with the result of the operation
+     */
+    public <T> CompletableFuture<T> submit(GattOperationPriority _priority, Supplier<CompletableFuture<T>> _operation) {
+        Operation<T> op = new Operation<>(Objects.requireNonNull(_priority, "Priority required"),
+            Objects.requireNonNull(_operation, "Operation required"));
+        boolean start;
+        synchronized (pending) {
+            pending.add(op);
+            start = !running;
+            running = true;
+        }
+        if (start) {
+            runNext();
+        }
+        return op.result;
+    }
+
+    private void runNext() {
+        while (true) {
+            Operation<?> op;
+            synchronized (pending) {
+                op = pending.poll();
+                if (op == null) {
+                    running = false;
+                    return;
+                }
+            }
+            if (!execute(op)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Start the given operation.
+     * @return true if the operation has finished synchronously, false if it is still running or will be retried
+     */
+    private <T> boolean execute(Operation<T> _op) {
+        if (_op.result.isDone()) {
+            return true;
+        }
+        CompletableFuture<T> future;
+        try {
+            future = _op.action.get();
+        } catch (RuntimeException _ex) {
+            future = CompletableFuture.failedFuture(_ex);
+        }
+        if (future == null) {
+            future = CompletableFuture.completedFuture(null);
+        }
+        long timeout = operationTimeout;
+        if (timeout > 0 && !future.isDone()) {
+            future = future.orTimeout(timeout, TimeUnit.MILLISECONDS);
+        }
+        if (future.isDone()) {
+            return finish(_op, future);
+        }
+        CompletableFuture<T> started = future;
+        future.whenComplete((r, ex) -> {
+            if (finish(_op, started)) {
+                runNext();
+            }
+        });
+        return false;
+    }
+
+    /**
+     * Complete the operation with the result of the given (done) future or schedule a retry.
+     * @return true if operation is finished, false if a retry was scheduled
+     */
+    private <T> boolean finish(Operation<T> _op, CompletableFuture<T> _future) {
+        T value;
+        try {
+            value = _future.join();
+        } catch (CompletionException | CancellationException _ex) {
+            Throwable cause = _ex instanceof CompletionException && _ex.getCause() != null ? _ex.getCause() : _ex;
+            if (isRetryable(cause) && _op.attempt < maxRetries && !_op.result.isDone()) {
+                long delay = getRetryDelay(_op.attempt);
+                _op.attempt++;
+                logger.debug("GATT operation on {} failed with {}, retry {} in {} ms", device.getDbusPath(), cause.getClass().getSimpleName(), _op.attempt, delay);
+                CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS).execute(() -> {
+                    if (execute(_op)) {
+                        runNext();
+                    }
+                });
+                return false;
+            }
+            _op.result.completeExceptionally(cause);
+            return true;
+        }
+        _op.result.complete(value);
+        return true;
+    }
+
+    /**
+     * Exponential backoff with jitter: a random delay between half and the full backoff of the given attempt,
+     * so devices rejected at the same moment do not retry in lockstep.
+     */
+    private long getRetryDelay(int _attempt) {
+        long backoff = initialRetryDelay;
+        long max = maxRetryDelay;
+        for (int i = 0; i < _attempt && backoff < max; i++) {
+            backoff *= 2;
+        }
+        backoff = Math.min(max, backoff);
+        long half = backoff / 2;
+        return half + ThreadLocalRandom.current().nextLong(backoff - half + 1);
+    }
+
+    private static boolean isRetryable(Throwable _ex) {
+        return _ex instanceof BluezInProgressException || _ex instanceof BluezNotReadyException
+            || _ex instanceof org.bluez.Error.InProgress || _ex instanceof org.bluez.Error.NotReady;
+    }
+
+    /**
+     * Queued operation, ordered by priority and submission order.
+     */
+    private static final class Operation<T> implements Comparable<Operation<?>> {
+        private final GattOperationPriority priority;
+        private final long sequence = SEQUENCE.incrementAndGet();
+        private final Supplier<CompletableFuture<T>> action;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private int attempt;
+
+        Operation(GattOperationPriority _priority, Supplier<CompletableFuture<T>> _action) {
+            priority = _priority;
+            action = _action;
+        }
+
+        @Override
+        public int compareTo(Operation<?> _other) {
+            int cmp = priority.compareTo(_other.priority);
+            return cmp != 0 ? cmp : Long.compare(sequence, _other.sequence);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.github.hypfvieh.bluetooth.wrapper;
+
+import org.freedesktop.dbus.types.UInt16;
+import org.freedesktop.dbus.types.Variant;
+
+import java.util.Map;
+
+/**
+ * Immutable options for reading GATT characteristics and descriptors.<br>
+ * Instances hold the prebuilt variant map and can be reused for any number of reads.
+ *
+ * @author hypfvieh
+ */
+public final class GattReadOptions extends AbstractVariantOptions {
+
+    /** Read without any options (offset 0). */
+    public static final GattReadOptions DEFAULT = new GattReadOptions(Map.of());
+
+    private GattReadOptions(Map<String, Variant<?>> _variants) {
+        super(_variants);
+    }
+
+    /**
+     * Options to read starting at the given offset.
+     * @param _offset offset (0 - 65535)
+     * @return options
+     * @throws IllegalArgumentException if offset is out of range
+     */
+    public static GattReadOptions offset(int _offset) {
+        return _offset == 0 ? DEFAULT : new GattReadOptions(Map.of("offset", new Variant<>(toUInt16(_offset))));
+    }
+
+    /**
+     * Offset to start reading at.
+     * @return offset, 0 if not set
+     */
+    public int getOffset() {
+        Object offset = getOption("offset");
+        return offset == null ? 0 : ((UInt16) offset).intValue();
+    }
+
+    static UInt16 toUInt16(int _offset) {
+        if (_offset < UInt16.MIN_VALUE || _offset > UInt16.MAX_VALUE) {
+            throw new IllegalArgumentException("Offset must be between " + UInt16.MIN_VALUE + " and " + UInt16.MAX_VALUE);
+        }
+        return new UInt16(_offset);
+    }
+}
@@ -0,0 +1,177 @@
+package com.github.hypfvieh.bluetooth.wrapper;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Resolves the GATT services, characteristics and descriptors of devices in parallel.<br>
+ * <br>
+ * {@link BluetoothDevice#refreshGattServices()} and friends walk the GATT tree one object at a time.
+ * This resolver queries the characteristics of all services and the descriptors of all characteristics
+ * concurrently, for any number of devices at once. Every query (Introspect and UUID reads of one object level)
+ * is executed as separate task on the given executor, at most maxConcurrency tasks are running at the same time.
+ * The wrapper objects of a device are only updated after its whole tree has been resolved.<br>
+ * <br>
+ * If a {@link GattCache} is set, the tree is restored from the cache if possible and the cache is updated
+ * for every device which had to be discovered.
+ *
+ * @author hypfvieh
+ */
+public final class GattTreeResolver {
+
+    private final Executor executor;
+    private final int maxConcurrency;
+
+    private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger running = new AtomicInteger();
+
+    private volatile GattCache gattCache;
+
+    /**
+     * Create a new resolver.
+     *
+     * @param _executor executor running the (blocking) DBus queries, should provide at least maxConcurrency threads
+     * @param _maxConcurrency maximum number of queries running at the same time
+     */
+    public GattTreeResolver(Executor _executor, int _maxConcurrency) {
+        if (_maxConcurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be greater than 0");
+        }
+        executor = Objects.requireNonNull(_executor, "Executor required");
+        maxConcurrency = _maxConcurrency;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * Use the given cache to restore known GATT trees and to store discovered trees.
+     * @param _cache cache, null to always discover
+     */
+    public void setGattCache(GattCache _cache) {
+        gattCache = _cache;
+    }
+
+    /**
+     * Resolve the GATT trees of all given devices.
+     *
+     * @param _devices devices
+     * @return future completed when all trees were resolved, fails if any device could not be resolved
+     */
+    public CompletableFuture<List<BluetoothDevice>> resolveAll(Collection<BluetoothDevice> _devices) {
+        List<CompletableFuture<BluetoothDevice>> futures = new ArrayList<>();
+        for (BluetoothDevice device : _devices) {
+            futures.add(resolve(device));
+        }
+        return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+            .thenApply(v -> futures.stream().map(CompletableFuture::join).toList());
+    }
+
+    /**
+     * Resolve the GATT tree of the given device.
+     *
+     * @param _device device
+     * @return future providing the device when services, characteristics and descriptors are resolved
+     */
+    public CompletableFuture<BluetoothDevice> resolve(BluetoothDevice _device) {
+        GattCache cache = gattCache;
+        CompletableFuture<Boolean> restored = cache == null
+            ? CompletableFuture.completedFuture(false)
+            : submit(() -> cache.restore(_device));
+
+        return restored.thenCompose(fromCache -> {
+            if (fromCache) {
+                return CompletableFuture.completedFuture(_device);
+            }
+            CompletableFuture<BluetoothDevice> discovered = discover(_device);
+            return cache == null ? discovered : discovered.thenCompose(d -> submit(() -> {
+                cache.store(d);
+                return d;
+            }));
+        });
+    }
+
+    private CompletableFuture<BluetoothDevice> discover(BluetoothDevice _device) {
+        long generation = _device.getGattServicesGeneration();
+        return submit(_device::discoverGattServices).thenCompose(services -> {
+            List<CompletableFuture<Void>> children = new ArrayList<>();
+            for (BluetoothGattService service : services.values()) {
+                children.add(resolveService(service));
+            }
+            return allOf(children).thenApply(v -> {
+                _device.setGattServices(services, generation);
+                return _device;
+            });
+        });
+    }
+
+    private CompletableFuture<Void> resolveService(BluetoothGattService _service) {
+        long generation = _service.getGattCharacteristicsGeneration();
+        return submit(_service::discoverGattCharacteristics).thenCompose(characteristics -> {
+            List<CompletableFuture<Void>> children = new ArrayList<>();
+            for (BluetoothGattCharacteristic characteristic : characteristics.values()) {
+                long descriptorGeneration = characteristic.getGattDescriptorsGeneration();
+                children.add(submit(characteristic::discoverGattDescriptors)
+                    .thenAccept(d -> characteristic.setGattDescriptors(d, descriptorGeneration)));
+            }
+            return allOf(children).thenRun(() -> _service.setGattCharacteristics(characteristics, generation));
+        });
+    }
+
+    private static CompletableFuture<Void> allOf(List<CompletableFuture<Void>> _futures) {
+        return CompletableFuture.allOf(_futures.toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * Queue a task, the task is passed to the executor as soon as less than maxConcurrency tasks are running.
+     * If the executor rejects the task, it is executed by the calling thread.
+     */
+    private <T> CompletableFuture<T> submit(Supplier<T> _task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        waiting.add(() -> {
+            try {
+                future.complete(_task.get());
+            } catch (RuntimeException _ex) {
+                future.completeExceptionally(_ex);
+            }
+        });
+        drain();
+        return future;
+    }
+
+    private void drain() {
+        while (!waiting.isEmpty()) {
+            int current = running.get();
+            if (current >= maxConcurrency) {
+                return;
+            }
+            if (!running.compareAndSet(current, current + 1)) {
+                continue;
+            }
+            Runnable task = waiting.poll();
+            if (task == null) {
+                running.decrementAndGet();
+                continue;
+            }
+            Runnable wrapped = () -> {
+                try {
+                    task.run();
+                } finally {
+                    running.decrementAndGet();
+                    drain();
+                }
+            };
+            try {
+                executor.execute(wrapped);
+            } catch (RejectedExecutionException _ex) {
+                wrapped.run();
+            }
+        }
+    }
+}
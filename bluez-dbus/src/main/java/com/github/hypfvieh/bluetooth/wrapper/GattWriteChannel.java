@@ -0,0 +1,181 @@
+package com.github.hypfvieh.bluetooth.wrapper;
+
+import com.github.hypfvieh.DbusHelper;
+import org.bluez.datatypes.TwoTuple;
+import org.bluez.exceptions.BluezFailedException;
+import org.bluez.exceptions.BluezNotSupportedException;
+import org.freedesktop.dbus.FileDescriptor;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+import org.freedesktop.dbus.types.UInt16;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Map;
+
+/**
+ * Channel to write values to a GATT characteristic without response.<br>
+ * <br>
+ * If supported, the file descriptor returned by AcquireWrite is used, so every packet is sent directly
+ * to bluez without creating a DBus message.
+ * Otherwise every packet is written using WriteValue with type "command" (write without response).
+ * <br>
+ * Every call of {@link #write(ByteBuffer)} sends one packet of at most {@link #getMtu()} bytes.
+ *
+ * @author hypfvieh
+ */
+public final class GattWriteChannel implements WritableByteChannel {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final BluetoothGattCharacteristic characteristic;
+    private final FileChannel channel;
+    private final int mtu;
+
+    private volatile boolean open = true;
+
+    private GattWriteChannel(BluetoothGattCharacteristic _characteristic, FileChannel _channel, int _mtu) {
+        characteristic = _characteristic;
+        channel = _channel;
+        mtu = _mtu;
+    }
+
+    /**
+     * Open a write channel, using AcquireWrite if possible and WriteValue otherwise.
+     */
+    static GattWriteChannel open(BluetoothGattCharacteristic _characteristic) {
+        Logger logger = LoggerFactory.getLogger(GattWriteChannel.class);
+        if (DbusHelper.isFileDescriptorSupported()) {
+            try {
+                TwoTuple<FileDescriptor, UInt16> acquired = _characteristic.getRawGattCharacteristic().AcquireWrite(Map.of());
+                java.io.FileDescriptor fd = acquired != null ? DbusHelper.toJavaFileDescriptor(acquired.getFirstValue()) : null;
+                if (fd != null) {
+                    int mtu = acquired.getSecondValue() != null && acquired.getSecondValue().intValue() > 0
+                        ? acquired.getSecondValue().intValue() : BluetoothGattCharacteristic.DEFAULT_ATT_PAYLOAD_SIZE;
+                    @SuppressWarnings("resource")
+                    FileChannel channel = new FileOutputStream(fd).getChannel();
+                    return new GattWriteChannel(_characteristic, channel, mtu);
+                }
+            } catch (BluezFailedException | BluezNotSupportedException | DBusExecutionException _ex) {
+                logger.debug("AcquireWrite not available for {}, using WriteValue", _characteristic.getDbusPath(), _ex);
+            }
+        }
+
+        Integer charMtu = _characteristic.getMtu();
+        int payloadSize = charMtu != null && charMtu > BluetoothGattCharacteristic.ATT_HEADER_SIZE
+            ? charMtu - BluetoothGattCharacteristic.ATT_HEADER_SIZE : BluetoothGattCharacteristic.DEFAULT_ATT_PAYLOAD_SIZE;
+        return new GattWriteChannel(_characteristic, null, payloadSize);
+    }
+
+    /**
+     * Returns true if the file descriptor of AcquireWrite is used, false if WriteValue is used.
+     * @return true if acquired
+     */
+    public boolean isAcquired() {
+        return channel != null;
+    }
+
+    /**
+     * Maximum number of bytes sent by a single write.<br>
+     * If AcquireWrite is used, this is the MTU returned by bluez.
+     * If bluez does not report an MTU, the default ATT payload size of 20 bytes is used.
+     * @return mtu
+     */
+    public int getMtu() {
+        return mtu;
+    }
+
+    public BluetoothGattCharacteristic getCharacteristic() {
+        return characteristic;
+    }
+
+    /**
+     * Send one packet containing the next (up to {@link #getMtu()}) bytes of the given buffer.
+     *
+     * @param _src buffer to write
+     * @return number of bytes written
+     * @throws IOException if writing failed or channel is closed
+     */
+    @Override
+    public int write(ByteBuffer _src) throws IOException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+        int len = Math.min(_src.remaining(), mtu);
+        if (len == 0) {
+            return 0;
+        }
+
+        if (channel != null) {
+            ByteBuffer packet = _src.duplicate();
+            packet.limit(packet.position() + len);
+            int written = channel.write(packet);
+            _src.position(_src.position() + written);
+            return written;
+        }
+
+        byte[] packet = new byte[len];
+        _src.get(packet);
+        try {
+            characteristic.getRawGattCharacteristic().WriteValue(packet, GattWriteOptions.COMMAND.toVariantMap());
+        } catch (DBusException | DBusExecutionException _ex) {
+            throw new IOException("Unable to write to " + characteristic.getDbusPath(), _ex);
+        }
+        return len;
+    }
+
+    /**
+     * Write all remaining bytes of the given buffer, split into packets of at most {@link #getMtu()} bytes.
+     *
+     * @param _src buffer to write
+     * @return number of bytes written
+     * @throws IOException if writing failed or channel is closed
+     */
+    public int writeFully(ByteBuffer _src) throws IOException {
+        int total = 0;
+        while (_src.hasRemaining()) {
+            total += write(_src);
+        }
+        return total;
+    }
+
+    /**
+     * Write the given bytes, split into packets of at most {@link #getMtu()} bytes.
+     *
+     * @param _data data to write
+     * @return number of bytes written
+     * @throws IOException if writing failed or channel is closed
+     */
+    public int writeFully(byte[] _data) throws IOException {
+        return writeFully(ByteBuffer.wrap(_data));
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Close the channel, releases the file descriptor acquired by AcquireWrite.
+     */
+    @Override
+    public void close() {
+        if (!open) {
+            return;
+        }
+        open = false;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException _ex) {
+                logger.debug("Error while closing write channel of {}", characteristic.getDbusPath(), _ex);
+            }
+        }
+    }
+}
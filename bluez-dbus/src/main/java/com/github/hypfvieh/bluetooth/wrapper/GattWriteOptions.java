@@ -0,0 +1,95 @@
+package com.github.hypfvieh.bluetooth.wrapper;
+
+import org.freedesktop.dbus.types.UInt16;
+import org.freedesktop.dbus.types.Variant;
+
+import java.util.*;
+
+/**
+ * Immutable options for writing GATT characteristics and descriptors.<br>
+ * Instances hold the prebuilt variant map and can be reused for any number of writes.
+ *
+ * @author hypfvieh
+ */
+public final class GattWriteOptions extends AbstractVariantOptions {
+
+    /** Write without any options, bluez selects the write procedure. */
+    public static final GattWriteOptions DEFAULT = new GattWriteOptions(null, 0);
+    /** Write without response. */
+    public static final GattWriteOptions COMMAND = new GattWriteOptions(GattWriteType.COMMAND, 0);
+    /** Write with response. */
+    public static final GattWriteOptions REQUEST = new GattWriteOptions(GattWriteType.REQUEST, 0);
+    /** Reliable write. */
+    public static final GattWriteOptions RELIABLE = new GattWriteOptions(GattWriteType.RELIABLE, 0);
+
+    private final GattWriteType type;
+    private final int offset;
+
+    private GattWriteOptions(GattWriteType _type, int _offset) {
+        super(toVariants(_type, _offset));
+        type = _type;
+        offset = _offset;
+    }
+
+    /**
+     * Create options using the given write type and offset.
+     * @param _type write type, null to let bluez decide
+     * @param _offset offset (0 - 65535)
+     * @return options
+     * @throws IllegalArgumentException if offset is out of range
+     */
+    public static GattWriteOptions of(GattWriteType _type, int _offset) {
+        if (_offset == 0) {
+            if (_type == null) {
+                return DEFAULT;
+            }
+            switch (_type) {
+                case COMMAND:
+                    return COMMAND;
+                case REQUEST:
+                    return REQUEST;
+                default:
+                    return RELIABLE;
+            }
+        }
+        return new GattWriteOptions(_type, _offset);
+    }
+
+    /**
+     * Copy of these options using the given offset.
+     * @param _offset offset (0 - 65535)
+     * @return options
+     * @throws IllegalArgumentException if offset is out of range
+     */
+    public GattWriteOptions withOffset(int _offset) {
+        return _offset == offset ? this : of(type, _offset);
+    }
+
+    /**
+     * Requested write type.
+     * @return type, null if bluez decides
+     */
+    public GattWriteType getType() {
+        return type;
+    }
+
+    /**
+     * Offset to start writing at.
+     * @return offset
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    private static Map<String, Variant<?>> toVariants(GattWriteType _type, int _offset) {
+        Map<String, Variant<?>> variants = new LinkedHashMap<>();
+        if (_offset != 0) {
+            UInt16 offset = GattReadOptions.toUInt16(_offset);
+            variants.put("offset", new Variant<>(offset));
+        }
+        if (_type != null) {
+            variants.put("type", new Variant<>(_type.toString()));
+        }
+        return variants;
+    }
+}
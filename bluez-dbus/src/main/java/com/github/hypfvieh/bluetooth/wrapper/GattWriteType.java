@@ -0,0 +1,23 @@
+package com.github.hypfvieh.bluetooth.wrapper;
+
+/**
+ * Write procedure requested by {@link GattWriteOptions}.
+ *
+ * @author hypfvieh
+ */
+public enum GattWriteType {
+    /** Write without response */
+    COMMAND,
+    /** Write with response */
+    REQUEST,
+    /** Reliable write */
+    RELIABLE;
+
+    /**
+     * Value used by bluez.
+     */
+    @Override
+    public String toString() {
+        return name().toLowerCase();
+    }
+}
@@ -0,0 +1,29 @@
+package com.github.hypfvieh.bluetooth.wrapper;
+
+import org.freedesktop.dbus.types.Variant;
+
+import java.util.Map;
+
+/**
+ * Listener which gets notified when objects are added to or removed from a {@link ManagedObjectTree}.
+ *
+ * @author hypfvieh
+ */
+public interface ManagedObjectListener {
+
+    /**
+     * Called when a new adapter, device, GATT service, characteristic or descriptor was published by bluez.
+     *
+     * @param _object wrapper object, already linked to its parent
+     * @param _properties properties of the object as received from bluez
+     */
+    void onObjectAdded(AbstractBluetoothObject _object, Map<String, Variant<?>> _properties);
+
+    /**
+     * Called when an object was removed by bluez.
+     * Children of the removed object are reported before their parent.
+     *
+     * @param _object removed wrapper object
+     */
+    void onObjectRemoved(AbstractBluetoothObject _object);
+}
@@ -0,0 +1,516 @@
+package com.github.hypfvieh.bluetooth.wrapper;
+
+import com.github.hypfvieh.DbusHelper;
+import com.github.hypfvieh.DbusSignalDispatcher;
+import org.bluez.Adapter1;
+import org.bluez.Device1;
+import org.bluez.GattCharacteristic1;
+import org.bluez.GattDescriptor1;
+import org.bluez.GattService1;
+import org.freedesktop.dbus.DBusPath;
+import org.freedesktop.dbus.connections.impl.DBusConnection;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+import org.freedesktop.dbus.interfaces.DBusSigHandler;
+import org.freedesktop.dbus.interfaces.ObjectManager;
+import org.freedesktop.dbus.interfaces.ObjectManager.InterfacesAdded;
+import org.freedesktop.dbus.interfaces.ObjectManager.InterfacesRemoved;
+import org.freedesktop.dbus.interfaces.Properties.PropertiesChanged;
+import org.freedesktop.dbus.messages.DBusSignal;
+import org.freedesktop.dbus.types.Variant;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Tree of all objects published by bluez.<br>
+ * <br>
+ * The tree is created using a single ObjectManager.GetManagedObjects call on the bluez root object.
+ * All adapter, device, GATT service, characteristic and descriptor wrappers are created from this
+ * result and are linked to each other, so no further introspection is required to walk the tree.
+ * <br><br>
+ * When created using {@link #loadAndTrack(DBusConnection, long, ManagedObjectListener)}, the tree is kept
+ * up to date by the InterfacesAdded/InterfacesRemoved signals of the object manager.
+ * Wrapper objects are added and removed incrementally, existing objects are never replaced.
+ *
+ * @author hypfvieh
+ */
+public final class ManagedObjectTree {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ManagedObjectTree.class);
+
+    private final DBusConnection connection;
+    private final long propertyCacheMaxAge;
+
+    private final Map<String, BluetoothAdapter> adapters = new ConcurrentSkipListMap<>();
+    private final Map<String, BluetoothDevice> devices = new ConcurrentSkipListMap<>();
+    private final Map<String, BluetoothGattService> services = new ConcurrentSkipListMap<>();
+    private final Map<String, BluetoothGattCharacteristic> characteristics = new ConcurrentSkipListMap<>();
+    private final Map<String, BluetoothGattDescriptor> descriptors = new ConcurrentSkipListMap<>();
+
+    /** object path <-> interface name <-> properties */
+    private final Map<String, Map<String, Map<String, Variant<?>>>> properties = new ConcurrentSkipListMap<>();
+
+    private final List<ManagedObjectListener> listeners = new CopyOnWriteArrayList<>();
+
+    private final DBusSigHandler<InterfacesAdded> interfacesAddedHandler = this::handleInterfacesAdded;
+    private final DBusSigHandler<InterfacesRemoved> interfacesRemovedHandler = this::handleInterfacesRemoved;
+    /** Registered for every tracked device to detect ServicesResolved */
+    private final DBusSigHandler<PropertiesChanged> devicePropertiesHandler = this::handleDevicePropertiesChanged;
+    private volatile boolean tracking;
+
+    /** Signals received while the initial query is running, null if no query is running */
+    private List<DBusSignal> pendingSignals;
+
+    private ManagedObjectTree(DBusConnection _connection, long _propertyCacheMaxAge) {
+        connection = _connection;
+        propertyCacheMaxAge = _propertyCacheMaxAge;
+    }
+
+    /**
+     * Load all objects published by bluez.
+     *
+     * @param _connection connection to use
+     * @param _propertyCacheMaxAge max age for the property cache of the created objects (see {@link AbstractBluetoothObject#enablePropertyCache(long)}),
+     *          negative value to disable property caching
+     * @return tree, never null
+     * @throws DBusException when object manager could not be queried
+     */
+    public static ManagedObjectTree load(DBusConnection _connection, long _propertyCacheMaxAge) throws DBusException {
+        ManagedObjectTree tree = new ManagedObjectTree(_connection, _propertyCacheMaxAge);
+        tree.loadManagedObjects();
+        return tree;
+    }
+
+    /**
+     * Load all objects published by bluez and keep the tree up to date using InterfacesAdded/InterfacesRemoved signals.<br>
+     * The given listener will be called for every object found by the initial query and for all objects
+     * added or removed later.
+     *
+     * @param _connection connection to use
+     * @param _propertyCacheMaxAge max age for the property cache of the created objects (see {@link AbstractBluetoothObject#enablePropertyCache(long)}),
+     *          negative value to disable property caching
+     * @param _listener listener to notify, may be null
+     * @return tree, never null
+     * @throws DBusException when object manager could not be queried or signal handlers could not be registered
+     */
+    public static ManagedObjectTree loadAndTrack(DBusConnection _connection, long _propertyCacheMaxAge, ManagedObjectListener _listener) throws DBusException {
+        ManagedObjectTree tree = new ManagedObjectTree(_connection, _propertyCacheMaxAge);
+        if (_listener != null) {
+            tree.addListener(_listener);
+        }
+
+        // register for signals first, so no change between query and registration is missed.
+        // Signals received until the query result is applied are queued and replayed afterwards.
+        synchronized (tree) {
+            tree.pendingSignals = new ArrayList<>();
+        }
+        DbusSignalDispatcher dispatcher = DbusSignalDispatcher.getInstance(_connection);
+        dispatcher.addInterfacesAddedHandler(tree.interfacesAddedHandler);
+        dispatcher.addInterfacesRemovedHandler(tree.interfacesRemovedHandler);
+        tree.tracking = true;
+
+        try {
+            tree.loadManagedObjects();
+        } catch (DBusException _ex) {
+            tree.stopTracking();
+            synchronized (tree) {
+                tree.pendingSignals = null;
+            }
+            throw _ex;
+        }
+        tree.replayPendingSignals();
+        return tree;
+    }
+
+    private void loadManagedObjects() throws DBusException {
+        applyManagedObjects(queryManagedObjects(connection));
+    }
+
+    /**
+     * Query all objects published by bluez using a single ObjectManager.GetManagedObjects call.
+     *
+     * @param _connection connection to use
+     * @return object path &lt;-&gt; interface name &lt;-&gt; properties, sorted by path so parents precede their children
+     * @throws DBusException when object manager could not be queried
+     */
+    static SortedMap<String, Map<String, Map<String, Variant<?>>>> queryManagedObjects(DBusConnection _connection) throws DBusException {
+        Map<DBusPath, Map<String, Map<String, Variant<?>>>> managedObjects;
+        try {
+            ObjectManager objectManager = _connection.getRemoteObject("org.bluez", "/", ObjectManager.class);
+            managedObjects = objectManager.GetManagedObjects();
+        } catch (DBusExecutionException _ex) {
+            throw new DBusException("Unable to query managed objects of bluez", _ex);
+        }
+
+        SortedMap<String, Map<String, Map<String, Variant<?>>>> byPath = new TreeMap<>();
+        for (Entry<DBusPath, Map<String, Map<String, Variant<?>>>> entry : managedObjects.entrySet()) {
+            byPath.put(entry.getKey().getPath(), entry.getValue());
+        }
+        return byPath;
+    }
+
+    private synchronized void applyManagedObjects(SortedMap<String, Map<String, Map<String, Variant<?>>>> _byPath) {
+        for (Entry<String, Map<String, Map<String, Variant<?>>>> entry : _byPath.entrySet()) {
+            addObject(entry.getKey(), entry.getValue());
+        }
+
+        // GetManagedObjects returned all children of resolved devices, empty collections do not have to be queried again
+        for (BluetoothDevice device : devices.values()) {
+            Map<String, Variant<?>> deviceProps = getProperties(device.getDbusPath(), Device1.class.getName());
+            Variant<?> resolved = deviceProps.get("ServicesResolved");
+            if (resolved != null && Boolean.TRUE.equals(resolved.getValue())) {
+                markGattObjectsLoaded(device);
+            }
+        }
+
+        LOGGER.debug("Loaded {} adapters, {} devices, {} services, {} characteristics and {} descriptors from bluez object manager",
+                adapters.size(), devices.size(), services.size(), characteristics.size(), descriptors.size());
+    }
+
+    /**
+     * Stop updating this tree by InterfacesAdded/InterfacesRemoved signals.
+     */
+    public void stopTracking() {
+        if (tracking) {
+            tracking = false;
+            DbusSignalDispatcher dispatcher = DbusSignalDispatcher.getInstance(connection);
+            dispatcher.removeInterfacesAddedHandler(interfacesAddedHandler);
+            dispatcher.removeInterfacesRemovedHandler(interfacesRemovedHandler);
+            synchronized (this) {
+                devices.keySet().forEach(p -> dispatcher.removePropertiesChangedHandler(p, devicePropertiesHandler));
+            }
+        }
+    }
+
+    /**
+     * Mark the GATT services, characteristics and descriptors of the given device as complete.<br>
+     * Objects added by InterfacesAdded signals are only added to the lists of their parents,
+     * the lists are marked complete once bluez reports that all services are resolved.
+     */
+    private void markGattObjectsLoaded(BluetoothDevice _device) {
+        _device.markGattServicesLoaded();
+        for (BluetoothGattService service : services.values()) {
+            if (service.getDevice() == _device) {
+                service.markGattCharacteristicsLoaded();
+            }
+        }
+        for (BluetoothGattCharacteristic characteristic : characteristics.values()) {
+            if (characteristic.getService().getDevice() == _device) {
+                characteristic.markGattDescriptorsLoaded();
+            }
+        }
+    }
+
+    private void handleDevicePropertiesChanged(PropertiesChanged _signal) {
+        if (!Device1.class.getName().equals(_signal.getInterfaceName())) {
+            return;
+        }
+        Variant<?> resolved = _signal.getPropertiesChanged().get("ServicesResolved");
+        if (resolved == null || !Boolean.TRUE.equals(resolved.getValue())) {
+            return;
+        }
+        synchronized (this) {
+            BluetoothDevice device = devices.get(_signal.getPath());
+            if (tracking && device != null) {
+                markGattObjectsLoaded(device);
+            }
+        }
+    }
+
+    /**
+     * Returns true if this tree is updated by InterfacesAdded/InterfacesRemoved signals.
+     * @return true if tracking
+     */
+    public boolean isTracking() {
+        return tracking;
+    }
+
+    /**
+     * Add a listener which is notified for all objects added or removed after this call.
+     * @param _listener listener
+     */
+    public void addListener(ManagedObjectListener _listener) {
+        listeners.add(Objects.requireNonNull(_listener, "Listener required"));
+    }
+
+    /**
+     * Remove a previously added listener.
+     * @param _listener listener
+     */
+    public void removeListener(ManagedObjectListener _listener) {
+        listeners.remove(_listener);
+    }
+
+    /**
+     * Apply all signals received while the initial query was running in the order they were received.
+     */
+    private synchronized void replayPendingSignals() {
+        List<DBusSignal> signals = pendingSignals;
+        pendingSignals = null;
+        if (signals == null || !tracking) {
+            return;
+        }
+        for (DBusSignal signal : signals) {
+            if (signal instanceof InterfacesAdded) {
+                applyInterfacesAdded((InterfacesAdded) signal);
+            } else {
+                applyInterfacesRemoved((InterfacesRemoved) signal);
+            }
+        }
+    }
+
+    private synchronized void handleInterfacesAdded(InterfacesAdded _signal) {
+        if (!tracking) {
+            return;
+        }
+        if (pendingSignals != null) {
+            pendingSignals.add(_signal);
+            return;
+        }
+        applyInterfacesAdded(_signal);
+    }
+
+    private synchronized void handleInterfacesRemoved(InterfacesRemoved _signal) {
+        if (!tracking) {
+            return;
+        }
+        if (pendingSignals != null) {
+            pendingSignals.add(_signal);
+            return;
+        }
+        applyInterfacesRemoved(_signal);
+    }
+
+    private void applyInterfacesAdded(InterfacesAdded _signal) {
+        String path = _signal.getObjectPath();
+        if (getObject(path) != null) {
+            // additional interface on an already known object, update raw properties only
+            properties.computeIfAbsent(path, p -> new LinkedHashMap<>()).putAll(_signal.getInterfaces());
+            return;
+        }
+        addObject(path, _signal.getInterfaces());
+    }
+
+    private void applyInterfacesRemoved(InterfacesRemoved _signal) {
+        String path = _signal.getObjectPath();
+        List<String> removedInterfaces = _signal.getInterfaces();
+        AbstractBluetoothObject obj = getObject(path);
+
+        if (obj == null || !removedInterfaces.contains(obj.getInterfaceClass().getName())) {
+            Map<String, Map<String, Variant<?>>> interfaces = properties.get(path);
+            if (interfaces != null) {
+                interfaces.keySet().removeAll(removedInterfaces);
+            }
+            return;
+        }
+
+        // remove all children first (deepest path first), then the object itself
+        List<String> childPaths = new ArrayList<>(properties.keySet().stream()
+                .filter(p -> p.startsWith(path + "/"))
+                .toList());
+        Collections.reverse(childPaths);
+        for (String childPath : childPaths) {
+            removeObject(childPath);
+        }
+        removeObject(path);
+    }
+
+    private void addObject(String _path, Map<String, Map<String, Variant<?>>> _interfaces) {
+        String parentPath = _path.substring(0, _path.lastIndexOf('/'));
+
+        AbstractBluetoothObject created = null;
+        Map<String, Variant<?>> props;
+        if ((props = _interfaces.get(Adapter1.class.getName())) != null) {
+            Adapter1 raw = DbusHelper.getRemoteObject(connection, _path, Adapter1.class);
+            if (raw != null) {
+                BluetoothAdapter adapter = initCache(new BluetoothAdapter(raw, _path, connection), props);
+                adapters.put(_path, adapter);
+                created = adapter;
+            }
+        } else if ((props = _interfaces.get(Device1.class.getName())) != null) {
+            BluetoothAdapter adapter = adapters.get(parentPath);
+            Device1 raw = DbusHelper.getRemoteObject(connection, _path, Device1.class);
+            if (adapter != null && raw != null) {
+                BluetoothDevice device = initCache(new BluetoothDevice(raw, adapter, _path, connection), props);
+                devices.put(_path, device);
+                if (tracking) {
+                    try {
+                        DbusSignalDispatcher.getInstance(connection).addPropertiesChangedHandler(_path, devicePropertiesHandler);
+                    } catch (DBusException _ex) {
+                        LOGGER.warn("Unable to watch ServicesResolved of {}, GATT objects will be queried on access", _path, _ex);
+                    }
+                }
+                created = device;
+            }
+        } else if ((props = _interfaces.get(GattService1.class.getName())) != null) {
+            BluetoothDevice device = devices.get(parentPath);
+            GattService1 raw = DbusHelper.getRemoteObject(connection, _path, GattService1.class);
+            if (device != null && raw != null) {
+                BluetoothGattService service = initCache(new BluetoothGattService(raw, device, _path, connection), props);
+                services.put(_path, service);
+                addChild(_path, getUuid(props), uuid -> device.addGattService(uuid, service));
+                created = service;
+            }
+        } else if ((props = _interfaces.get(GattCharacteristic1.class.getName())) != null) {
+            BluetoothGattService service = services.get(parentPath);
+            GattCharacteristic1 raw = DbusHelper.getRemoteObject(connection, _path, GattCharacteristic1.class);
+            if (service != null && raw != null) {
+                BluetoothGattCharacteristic characteristic = initCache(new BluetoothGattCharacteristic(raw, service, _path, connection), props);
+                characteristics.put(_path, characteristic);
+                addChild(_path, getUuid(props), uuid -> service.addGattCharacteristic(uuid, characteristic));
+                created = characteristic;
+            }
+        } else if ((props = _interfaces.get(GattDescriptor1.class.getName())) != null) {
+            BluetoothGattCharacteristic characteristic = characteristics.get(parentPath);
+            GattDescriptor1 raw = DbusHelper.getRemoteObject(connection, _path, GattDescriptor1.class);
+            if (characteristic != null && raw != null) {
+                BluetoothGattDescriptor descriptor = initCache(new BluetoothGattDescriptor(raw, characteristic, _path, connection), props);
+                descriptors.put(_path, descriptor);
+                addChild(_path, getUuid(props), uuid -> characteristic.addGattDescriptor(uuid, descriptor));
+                created = descriptor;
+            }
+        }
+
+        properties.put(_path, new LinkedHashMap<>(_interfaces));
+
+        if (created != null) {
+            for (ManagedObjectListener listener : listeners) {
+                try {
+                    listener.onObjectAdded(created, props);
+                } catch (Exception _ex) {
+                    LOGGER.warn("Error in listener while adding object {}", _path, _ex);
+                }
+            }
+        }
+    }
+
+    private void removeObject(String _path) {
+        properties.remove(_path);
+
+        AbstractBluetoothObject removed;
+        if ((removed = descriptors.remove(_path)) != null) {
+            BluetoothGattDescriptor descriptor = (BluetoothGattDescriptor) removed;
+            descriptor.getCharacteristic().removeGattDescriptor(descriptor);
+        } else if ((removed = characteristics.remove(_path)) != null) {
+            BluetoothGattCharacteristic characteristic = (BluetoothGattCharacteristic) removed;
+            characteristic.getService().removeGattCharacteristic(characteristic);
+        } else if ((removed = services.remove(_path)) != null) {
+            BluetoothGattService service = (BluetoothGattService) removed;
+            service.getDevice().removeGattService(service);
+        } else if ((removed = devices.remove(_path)) != null) {
+            DbusSignalDispatcher.getInstance(connection).removePropertiesChangedHandler(_path, devicePropertiesHandler);
+        } else {
+            removed = adapters.remove(_path);
+        }
+
+        if (removed != null) {
+            removed.disablePropertyCache();
+            for (ManagedObjectListener listener : listeners) {
+                try {
+                    listener.onObjectRemoved(removed);
+                } catch (Exception _ex) {
+                    LOGGER.warn("Error in listener while removing object {}", _path, _ex);
+                }
+            }
+        }
+    }
+
+    private <T extends AbstractBluetoothObject> T initCache(T _object, Map<String, Variant<?>> _properties) {
+        if (propertyCacheMaxAge >= 0) {
+            _object.enablePropertyCache(propertyCacheMaxAge, _properties);
+        }
+        return _object;
+    }
+
+    /**
+     * Add a GATT object to the UUID map of its parent, objects without a valid UUID are only tracked by path.
+     */
+    private static void addChild(String _path, BluetoothUuid _uuid, Consumer<BluetoothUuid> _adder) {
+        if (_uuid == null) {
+            LOGGER.debug("Ignoring GATT object {} with missing or invalid UUID", _path);
+            return;
+        }
+        _adder.accept(_uuid);
+    }
+
+    private static BluetoothUuid getUuid(Map<String, Variant<?>> _properties) {
+        Variant<?> uuid = _properties.get("UUID");
+        return uuid != null ? BluetoothUuid.tryParse(String.valueOf(uuid.getValue())) : null;
+    }
+
+    /**
+     * All adapters found.
+     * @return list, maybe empty, never null
+     */
+    public List<BluetoothAdapter> getAdapters() {
+        return new ArrayList<>(adapters.values());
+    }
+
+    /**
+     * All devices known by any adapter.
+     * @return list, maybe empty, never null
+     */
+    public List<BluetoothDevice> getDevices() {
+        return new ArrayList<>(devices.values());
+    }
+
+    /**
+     * All devices known by the given adapter.
+     * @param _adapter adapter
+     * @return list, maybe empty, never null
+     */
+    public List<BluetoothDevice> getDevices(BluetoothAdapter _adapter) {
+        List<BluetoothDevice> result = new ArrayList<>();
+        for (BluetoothDevice device : devices.values()) {
+            if (device.getAdapter() == _adapter) {
+                result.add(device);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the wrapper object for the given DBus path.
+     * @param _path object path
+     * @return adapter, device, service, characteristic or descriptor object, null if path is unknown
+     */
+    public AbstractBluetoothObject getObject(String _path) {
+        AbstractBluetoothObject obj = adapters.get(_path);
+        if (obj == null) {
+            obj = devices.get(_path);
+        }
+        if (obj == null) {
+            obj = services.get(_path);
+        }
+        if (obj == null) {
+            obj = characteristics.get(_path);
+        }
+        if (obj == null) {
+            obj = descriptors.get(_path);
+        }
+        return obj;
+    }
+
+    /**
+     * Get all properties of the given interface of the object with the given path as received from bluez.<br>
+     * The properties are not updated by PropertiesChanged signals, use the property cache of the wrapper objects for that.
+     *
+     * @param _path object path
+     * @param _interface interface name (e.g. org.bluez.Device1)
+     * @return unmodifiable map, maybe empty, never null
+     */
+    public Map<String, Variant<?>> getProperties(String _path, String _interface) {
+        Map<String, Map<String, Variant<?>>> interfaces = properties.get(_path);
+        if (interfaces == null || !interfaces.containsKey(_interface)) {
+            return Collections.emptyMap();
+        }
+        return Collections.unmodifiableMap(interfaces.get(_interface));
+    }
+
+}
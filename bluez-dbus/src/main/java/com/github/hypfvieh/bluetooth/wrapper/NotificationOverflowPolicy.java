@@ -0,0 +1,22 @@
+package com.github.hypfvieh.bluetooth.wrapper;
+
+/**
+ * Defines what a {@link GattNotificationQueue} does when a notification arrives while the queue is full.
+ *
+ * @author hypfvieh
+ */
+public enum NotificationOverflowPolicy {
+    /** Remove the oldest queued notification to make room for the new one. */
+    DROP_OLDEST,
+    /** Discard the new notification, queued notifications are kept. */
+    DROP_NEWEST,
+    /** Replace the most recently queued notification by the new one, so the queue always ends with the latest value. */
+    COALESCE_LATEST,
+    /**
+     * Block the receiving thread until the consumer has taken a notification or the queue is closed,
+     * but not longer than the maximum block time of the queue. The new notification is dropped if the time elapsed.<br>
+     * Notifications are usually received by the signal thread of the DBus connection,
+     * while blocked no other signal of the connection is processed.
+     */
+    BLOCK
+}
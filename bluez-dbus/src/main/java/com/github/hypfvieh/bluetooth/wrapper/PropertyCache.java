@@ -0,0 +1,161 @@
+package com.github.hypfvieh.bluetooth.wrapper;
+
+import org.freedesktop.dbus.types.Variant;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local copy of the DBus properties of a single bluetooth object.<br>
+ * The cache is seeded by one GetAll call and kept up to date by PropertiesChanged signals.
+ *
+ * @author hypfvieh
+ */
+final class PropertyCache {
+
+    /** Returned by {@link #lookup(String)} if the property is known to be not present on the remote object. */
+    static final Object ABSENT = new Object();
+
+    private final Map<String, CachedValue> values = new ConcurrentHashMap<>();
+    private final long maxAgeNanos;
+
+    /** Time of last GetAll, 0 if never seeded. */
+    private volatile long seededAt;
+
+    /**
+     * Create a new cache.
+     * @param _maxAgeMillis maximum age of a cached value in milliseconds, 0 or less to never expire values
+     */
+    PropertyCache(long _maxAgeMillis) {
+        maxAgeNanos = _maxAgeMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(_maxAgeMillis) : 0;
+    }
+
+    long getMaxAgeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxAgeNanos);
+    }
+
+    /**
+     * Replace all cached values with the given result of a GetAll call.
+     * @param _properties properties
+     */
+    void seed(Map<String, Variant<?>> _properties) {
+        long now = System.nanoTime();
+        // while refilling, missing values have to be reported as unknown instead of absent
+        seededAt = 0;
+        values.clear();
+        if (_properties != null) {
+            for (Entry<String, Variant<?>> entry : _properties.entrySet()) {
+                values.put(entry.getKey(), new CachedValue(valueOf(entry.getValue()), now));
+            }
+        }
+        seededAt = now;
+    }
+
+    /**
+     * Apply the content of a PropertiesChanged signal.
+     * @param _changed changed properties
+     * @param _invalidated properties which were invalidated (value not transmitted)
+     */
+    void update(Map<String, Variant<?>> _changed, List<String> _invalidated) {
+        long now = System.nanoTime();
+        if (_changed != null) {
+            for (Entry<String, Variant<?>> entry : _changed.entrySet()) {
+                values.put(entry.getKey(), new CachedValue(valueOf(entry.getValue()), now));
+            }
+        }
+        if (_invalidated != null) {
+            for (String name : _invalidated) {
+                // value is unknown now, next read has to go to the remote object
+                values.remove(name);
+            }
+        }
+    }
+
+    void put(String _name, Object _value) {
+        values.put(_name, new CachedValue(_value, System.nanoTime()));
+    }
+
+    void remove(String _name) {
+        values.remove(_name);
+    }
+
+    void clear() {
+        values.clear();
+        seededAt = 0;
+    }
+
+    /**
+     * Lookup a cached value.
+     *
+     * @param _name property name
+     * @return value, {@link #ABSENT} if the property is known to be missing or null if the value is unknown or stale
+     */
+    Object lookup(String _name) {
+        long now = System.nanoTime();
+        CachedValue cached = values.get(_name);
+        if (cached != null) {
+            return isFresh(cached.timestamp, now) ? cached.value : null;
+        }
+        long seeded = seededAt;
+        if (seeded != 0 && isFresh(seeded, now)) {
+            // GetAll did not contain this property and no signal added it since
+            return ABSENT;
+        }
+        return null;
+    }
+
+    /**
+     * Unwrap the given variant, byte arrays (signature 'ay') are stored as byte[] instead of the
+     * List of Byte created by dbus-java, so they are only converted once.
+     */
+    private static Object valueOf(Variant<?> _variant) {
+        Object value = _variant.getValue();
+        if ("ay".equals(_variant.getSig())) {
+            byte[] bytes = toByteArray(value);
+            return bytes != null ? bytes : value;
+        }
+        return value;
+    }
+
+    /**
+     * Convert a DBus byte array value (byte[] or List of Byte) to byte[].<br>
+     * A given byte[] is returned as is and is not copied.
+     *
+     * @param _value value
+     * @return byte array or null if value is no byte array
+     */
+    static byte[] toByteArray(Object _value) {
+        if (_value instanceof byte[]) {
+            return (byte[]) _value;
+        } else if (_value instanceof List) {
+            List<?> list = (List<?>) _value;
+            byte[] result = new byte[list.size()];
+            int i = 0;
+            for (Object o : list) {
+                if (!(o instanceof Byte)) {
+                    return null;
+                }
+                result[i++] = (Byte) o;
+            }
+            return result;
+        }
+        return null;
+    }
+
+    private boolean isFresh(long _timestamp, long _now) {
+        return maxAgeNanos <= 0 || _now - _timestamp <= maxAgeNanos;
+    }
+
+    private static final class CachedValue {
+        private final Object value;
+        private final long timestamp;
+
+        CachedValue(Object _value, long _timestamp) {
+            value = _value;
+            timestamp = _timestamp;
+        }
+    }
+}
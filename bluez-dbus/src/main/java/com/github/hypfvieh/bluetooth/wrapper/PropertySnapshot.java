@@ -0,0 +1,125 @@
+package com.github.hypfvieh.bluetooth.wrapper;
+
+import org.freedesktop.dbus.types.UInt16;
+import org.freedesktop.dbus.types.UInt32;
+import org.freedesktop.dbus.types.Variant;
+
+import java.util.*;
+
+/**
+ * Immutable copy of all DBus properties of a bluetooth object, received by a single GetAll call.
+ *
+ * @author hypfvieh
+ */
+public class PropertySnapshot {
+
+    private final String dbusPath;
+    private final String interfaceName;
+    private final Map<String, Object> properties;
+    private final long timestamp;
+
+    protected PropertySnapshot(String _dbusPath, String _interfaceName, Map<String, Object> _properties) {
+        dbusPath = _dbusPath;
+        interfaceName = _interfaceName;
+        properties = _properties == null ? Map.of() : Collections.unmodifiableMap(new LinkedHashMap<>(_properties));
+        timestamp = System.currentTimeMillis();
+    }
+
+    public String getDbusPath() {
+        return dbusPath;
+    }
+
+    /**
+     * DBus interface the properties were read from (e.g. org.bluez.Device1).
+     * @return interface name
+     */
+    public String getInterfaceName() {
+        return interfaceName;
+    }
+
+    /**
+     * Time the snapshot was taken (milliseconds since epoch).
+     * @return timestamp
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Names of all properties contained in this snapshot.
+     * @return Set, maybe empty but never null
+     */
+    public Set<String> getPropertyNames() {
+        return properties.keySet();
+    }
+
+    /**
+     * Returns true if the remote object provided the given property.
+     * @param _name property name
+     * @return true if present
+     */
+    public boolean hasProperty(String _name) {
+        return properties.containsKey(_name);
+    }
+
+    /**
+     * Returns the raw value of the given property as received from DBus.
+     *
+     * @param _name property name
+     * @param _type expected type
+     * @param <T> class of the expected result
+     * @return value or null if property is missing or has a different type
+     */
+    public <T> T getValue(String _name, Class<T> _type) {
+        Object value = properties.get(_name);
+        return _type.isInstance(value) ? _type.cast(value) : null;
+    }
+
+    protected Integer getUnsigned(String _name) {
+        Object value = properties.get(_name);
+        if (value instanceof UInt16) {
+            return ((UInt16) value).intValue();
+        } else if (value instanceof UInt32) {
+            return ((UInt32) value).intValue();
+        }
+        return null;
+    }
+
+    protected String[] getStringArray(String _name) {
+        Object value = properties.get(_name);
+        if (value instanceof List) {
+            return ((List<?>) value).toArray(new String[] {});
+        } else if (value instanceof String[]) {
+            return ((String[]) value).clone();
+        }
+        return null;
+    }
+
+    /**
+     * Convert a DBus byte array value (byte[], List of Byte or a Variant containing one of those) to a new byte[].
+     * @param _value value
+     * @return byte array or null if value is no byte array
+     */
+    protected static byte[] toBytes(Object _value) {
+        Object value = _value instanceof Variant ? ((Variant<?>) _value).getValue() : _value;
+        if (value instanceof byte[]) {
+            return ((byte[]) value).clone();
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            byte[] result = new byte[list.size()];
+            for (int i = 0; i < result.length; i++) {
+                if (!(list.get(i) instanceof Byte)) {
+                    return null;
+                }
+                result[i] = (Byte) list.get(i);
+            }
+            return result;
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " [dbusPath=" + dbusPath + ", properties=" + properties.keySet() + "]";
+    }
+}
@@ -0,0 +1,16 @@
+package org.bluez.Error;
+
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+
+/**
+ * Created by dbus-java when bluez replies with error org.bluez.Error.AlreadyConnected.
+ * @see org.bluez.exceptions.BluezAlreadyConnectedException
+ */
+@SuppressWarnings("serial")
+public class AlreadyConnected extends DBusExecutionException {
+
+    public AlreadyConnected(String _message) {
+        super(_message);
+    }
+
+}
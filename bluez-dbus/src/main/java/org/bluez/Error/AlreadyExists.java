@@ -0,0 +1,16 @@
+package org.bluez.Error;
+
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+
+/**
+ * Created by dbus-java when bluez replies with error org.bluez.Error.AlreadyExists.
+ * @see org.bluez.exceptions.BluezAlreadyExistsException
+ */
+@SuppressWarnings("serial")
+public class AlreadyExists extends DBusExecutionException {
+
+    public AlreadyExists(String _message) {
+        super(_message);
+    }
+
+}
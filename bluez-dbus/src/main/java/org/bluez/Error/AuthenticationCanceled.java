@@ -0,0 +1,16 @@
+package org.bluez.Error;
+
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+
+/**
+ * Created by dbus-java when bluez replies with error org.bluez.Error.AuthenticationCanceled.
+ * @see org.bluez.exceptions.BluezAuthenticationCanceledException
+ */
+@SuppressWarnings("serial")
+public class AuthenticationCanceled extends DBusExecutionException {
+
+    public AuthenticationCanceled(String _message) {
+        super(_message);
+    }
+
+}
@@ -0,0 +1,16 @@
+package org.bluez.Error;
+
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+
+/**
+ * Created by dbus-java when bluez replies with error org.bluez.Error.AuthenticationFailed.
+ * @see org.bluez.exceptions.BluezAuthenticationFailedException
+ */
+@SuppressWarnings("serial")
+public class AuthenticationFailed extends DBusExecutionException {
+
+    public AuthenticationFailed(String _message) {
+        super(_message);
+    }
+
+}
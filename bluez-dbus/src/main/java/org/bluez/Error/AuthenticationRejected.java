@@ -0,0 +1,16 @@
+package org.bluez.Error;
+
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+
+/**
+ * Created by dbus-java when bluez replies with error org.bluez.Error.AuthenticationRejected.
+ * @see org.bluez.exceptions.BluezAuthenticationRejectedException
+ */
+@SuppressWarnings("serial")
+public class AuthenticationRejected extends DBusExecutionException {
+
+    public AuthenticationRejected(String _message) {
+        super(_message);
+    }
+
+}
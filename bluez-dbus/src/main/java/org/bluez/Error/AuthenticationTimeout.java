@@ -0,0 +1,16 @@
+package org.bluez.Error;
+
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+
+/**
+ * Created by dbus-java when bluez replies with error org.bluez.Error.AuthenticationTimeout.
+ * @see org.bluez.exceptions.BluezAuthenticationTimeoutException
+ */
+@SuppressWarnings("serial")
+public class AuthenticationTimeout extends DBusExecutionException {
+
+    public AuthenticationTimeout(String _message) {
+        super(_message);
+    }
+
+}
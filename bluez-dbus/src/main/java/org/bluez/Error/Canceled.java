@@ -0,0 +1,16 @@
+package org.bluez.Error;
+
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+
+/**
+ * Created by dbus-java when bluez replies with error org.bluez.Error.Canceled.
+ * @see org.bluez.exceptions.BluezCanceledException
+ */
+@SuppressWarnings("serial")
+public class Canceled extends DBusExecutionException {
+
+    public Canceled(String _message) {
+        super(_message);
+    }
+
+}
@@ -0,0 +1,16 @@
+package org.bluez.Error;
+
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+
+/**
+ * Created by dbus-java when bluez replies with error org.bluez.Error.ConnectFailed.
+ * @see org.bluez.exceptions.BluezConnectFailedException
+ */
+@SuppressWarnings("serial")
+public class ConnectFailed extends DBusExecutionException {
+
+    public ConnectFailed(String _message) {
+        super(_message);
+    }
+
+}
@@ -0,0 +1,16 @@
+package org.bluez.Error;
+
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+
+/**
+ * Created by dbus-java when bluez replies with error org.bluez.Error.ConnectionAttemptFailed.
+ * @see org.bluez.exceptions.BluezConnectionAttemptFailedException
+ */
+@SuppressWarnings("serial")
+public class ConnectionAttemptFailed extends DBusExecutionException {
+
+    public ConnectionAttemptFailed(String _message) {
+        super(_message);
+    }
+
+}
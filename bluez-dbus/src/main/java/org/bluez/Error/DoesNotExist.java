@@ -0,0 +1,16 @@
+package org.bluez.Error;
+
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+
+/**
+ * Created by dbus-java when bluez replies with error org.bluez.Error.DoesNotExist.
+ * @see org.bluez.exceptions.BluezDoesNotExistException
+ */
+@SuppressWarnings("serial")
+public class DoesNotExist extends DBusExecutionException {
+
+    public DoesNotExist(String _message) {
+        super(_message);
+    }
+
+}
@@ -0,0 +1,16 @@
+package org.bluez.Error;
+
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+
+/**
+ * Created by dbus-java when bluez replies with error org.bluez.Error.Failed.
+ * @see org.bluez.exceptions.BluezFailedException
+ */
+@SuppressWarnings("serial")
+public class Failed extends DBusExecutionException {
+
+    public Failed(String _message) {
+        super(_message);
+    }
+
+}
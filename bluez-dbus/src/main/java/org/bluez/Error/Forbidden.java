@@ -0,0 +1,16 @@
+package org.bluez.Error;
+
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+
+/**
+ * Created by dbus-java when bluez replies with error org.bluez.Error.Forbidden.
+ * @see org.bluez.exceptions.BluezForbiddenException
+ */
+@SuppressWarnings("serial")
+public class Forbidden extends DBusExecutionException {
+
+    public Forbidden(String _message) {
+        super(_message);
+    }
+
+}
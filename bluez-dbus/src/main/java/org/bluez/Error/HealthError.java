@@ -0,0 +1,16 @@
+package org.bluez.Error;
+
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+
+/**
+ * Created by dbus-java when bluez replies with error org.bluez.Error.HealthError.
+ * @see org.bluez.exceptions.BluezHealthErrorException
+ */
+@SuppressWarnings("serial")
+public class HealthError extends DBusExecutionException {
+
+    public HealthError(String _message) {
+        super(_message);
+    }
+
+}
@@ -0,0 +1,16 @@
+package org.bluez.Error;
+
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+
+/**
+ * Created by dbus-java when bluez replies with error org.bluez.Error.InNotAllowed.
+ * @see org.bluez.exceptions.BluezInNotAllowedException
+ */
+@SuppressWarnings("serial")
+public class InNotAllowed extends DBusExecutionException {
+
+    public InNotAllowed(String _message) {
+        super(_message);
+    }
+
+}
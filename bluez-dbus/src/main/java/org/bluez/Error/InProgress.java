@@ -0,0 +1,16 @@
+package org.bluez.Error;
+
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+
+/**
+ * Created by dbus-java when bluez replies with error org.bluez.Error.InProgress.
+ * @see org.bluez.exceptions.BluezInProgressException
+ */
+@SuppressWarnings("serial")
+public class InProgress extends DBusExecutionException {
+
+    public InProgress(String _message) {
+        super(_message);
+    }
+
+}
@@ -0,0 +1,16 @@
+package org.bluez.Error;
+
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+
+/**
+ * Created by dbus-java when bluez replies with error org.bluez.Error.InvalidArguments.
+ * @see org.bluez.exceptions.BluezInvalidArgumentsException
+ */
+@SuppressWarnings("serial")
+public class InvalidArguments extends DBusExecutionException {
+
+    public InvalidArguments(String _message) {
+        super(_message);
+    }
+
+}
@@ -0,0 +1,16 @@
+package org.bluez.Error;
+
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+
+/**
+ * Created by dbus-java when bluez replies with error org.bluez.Error.InvalidLength.
+ * @see org.bluez.exceptions.BluezInvalidLengthException
+ */
+@SuppressWarnings("serial")
+public class InvalidLength extends DBusExecutionException {
+
+    public InvalidLength(String _message) {
+        super(_message);
+    }
+
+}
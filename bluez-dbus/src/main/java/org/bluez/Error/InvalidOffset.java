@@ -0,0 +1,16 @@
+package org.bluez.Error;
+
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+
+/**
+ * Created by dbus-java when bluez replies with error org.bluez.Error.InvalidOffset.
+ * @see org.bluez.exceptions.BluezInvalidOffsetException
+ */
+@SuppressWarnings("serial")
+public class InvalidOffset extends DBusExecutionException {
+
+    public InvalidOffset(String _message) {
+        super(_message);
+    }
+
+}
@@ -0,0 +1,16 @@
+package org.bluez.Error;
+
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+
+/**
+ * Created by dbus-java when bluez replies with error org.bluez.Error.InvalidValueLength.
+ * @see org.bluez.exceptions.BluezInvalidValueLengthException
+ */
+@SuppressWarnings("serial")
+public class InvalidValueLength extends DBusExecutionException {
+
+    public InvalidValueLength(String _message) {
+        super(_message);
+    }
+
+}
@@ -0,0 +1,16 @@
+package org.bluez.Error;
+
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+
+/**
+ * Created by dbus-java when bluez replies with error org.bluez.Error.NotAcquired.
+ * @see org.bluez.exceptions.BluezNotAcquiredException
+ */
+@SuppressWarnings("serial")
+public class NotAcquired extends DBusExecutionException {
+
+    public NotAcquired(String _message) {
+        super(_message);
+    }
+
+}
@@ -0,0 +1,16 @@
+package org.bluez.Error;
+
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+
+/**
+ * Created by dbus-java when bluez replies with error org.bluez.Error.NotAllowed.
+ * @see org.bluez.exceptions.BluezNotAllowedException
+ */
+@SuppressWarnings("serial")
+public class NotAllowed extends DBusExecutionException {
+
+    public NotAllowed(String _message) {
+        super(_message);
+    }
+
+}
@@ -0,0 +1,16 @@
+package org.bluez.Error;
+
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+
+/**
+ * Created by dbus-java when bluez replies with error org.bluez.Error.NotAuthorized.
+ * @see org.bluez.exceptions.BluezNotAuthorizedException
+ */
+@SuppressWarnings("serial")
+public class NotAuthorized extends DBusExecutionException {
+
+    public NotAuthorized(String _message) {
+        super(_message);
+    }
+
+}
@@ -0,0 +1,16 @@
+package org.bluez.Error;
+
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+
+/**
+ * Created by dbus-java when bluez replies with error org.bluez.Error.NotAvailable.
+ * @see org.bluez.exceptions.BluezNotAvailableException
+ */
+@SuppressWarnings("serial")
+public class NotAvailable extends DBusExecutionException {
+
+    public NotAvailable(String _message) {
+        super(_message);
+    }
+
+}
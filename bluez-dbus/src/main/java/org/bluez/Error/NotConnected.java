@@ -0,0 +1,16 @@
+package org.bluez.Error;
+
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+
+/**
+ * Created by dbus-java when bluez replies with error org.bluez.Error.NotConnected.
+ * @see org.bluez.exceptions.BluezNotConnectedException
+ */
+@SuppressWarnings("serial")
+public class NotConnected extends DBusExecutionException {
+
+    public NotConnected(String _message) {
+        super(_message);
+    }
+
+}
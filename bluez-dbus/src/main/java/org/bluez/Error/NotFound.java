@@ -0,0 +1,16 @@
+package org.bluez.Error;
+
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+
+/**
+ * Created by dbus-java when bluez replies with error org.bluez.Error.NotFound.
+ * @see org.bluez.exceptions.BluezNotFoundException
+ */
+@SuppressWarnings("serial")
+public class NotFound extends DBusExecutionException {
+
+    public NotFound(String _message) {
+        super(_message);
+    }
+
+}
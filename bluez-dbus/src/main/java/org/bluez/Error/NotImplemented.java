@@ -0,0 +1,16 @@
+package org.bluez.Error;
+
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+
+/**
+ * Created by dbus-java when bluez replies with error org.bluez.Error.NotImplemented.
+ * @see org.bluez.exceptions.BluezNotImplementedException
+ */
+@SuppressWarnings("serial")
+public class NotImplemented extends DBusExecutionException {
+
+    public NotImplemented(String _message) {
+        super(_message);
+    }
+
+}
@@ -0,0 +1,16 @@
+package org.bluez.Error;
+
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+
+/**
+ * Created by dbus-java when bluez replies with error org.bluez.Error.NotInProgress.
+ * @see org.bluez.exceptions.BluezNotInProgressException
+ */
+@SuppressWarnings("serial")
+public class NotInProgress extends DBusExecutionException {
+
+    public NotInProgress(String _message) {
+        super(_message);
+    }
+
+}
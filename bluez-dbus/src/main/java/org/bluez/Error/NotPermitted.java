@@ -0,0 +1,16 @@
+package org.bluez.Error;
+
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+
+/**
+ * Created by dbus-java when bluez replies with error org.bluez.Error.NotPermitted.
+ * @see org.bluez.exceptions.BluezNotPermittedException
+ */
+@SuppressWarnings("serial")
+public class NotPermitted extends DBusExecutionException {
+
+    public NotPermitted(String _message) {
+        super(_message);
+    }
+
+}
@@ -0,0 +1,16 @@
+package org.bluez.Error;
+
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+
+/**
+ * Created by dbus-java when bluez replies with error org.bluez.Error.NotReady.
+ * @see org.bluez.exceptions.BluezNotReadyException
+ */
+@SuppressWarnings("serial")
+public class NotReady extends DBusExecutionException {
+
+    public NotReady(String _message) {
+        super(_message);
+    }
+
+}
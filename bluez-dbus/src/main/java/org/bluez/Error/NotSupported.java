@@ -0,0 +1,16 @@
+package org.bluez.Error;
+
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+
+/**
+ * Created by dbus-java when bluez replies with error org.bluez.Error.NotSupported.
+ * @see org.bluez.exceptions.BluezNotSupportedException
+ */
+@SuppressWarnings("serial")
+public class NotSupported extends DBusExecutionException {
+
+    public NotSupported(String _message) {
+        super(_message);
+    }
+
+}
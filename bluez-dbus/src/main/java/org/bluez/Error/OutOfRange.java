@@ -0,0 +1,16 @@
+package org.bluez.Error;
+
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+
+/**
+ * Created by dbus-java when bluez replies with error org.bluez.Error.OutOfRange.
+ * @see org.bluez.exceptions.BluezOutOfRangeException
+ */
+@SuppressWarnings("serial")
+public class OutOfRange extends DBusExecutionException {
+
+    public OutOfRange(String _message) {
+        super(_message);
+    }
+
+}
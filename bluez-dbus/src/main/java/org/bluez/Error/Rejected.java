@@ -0,0 +1,16 @@
+package org.bluez.Error;
+
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+
+/**
+ * Created by dbus-java when bluez replies with error org.bluez.Error.Rejected.
+ * @see org.bluez.exceptions.BluezRejectedException
+ */
+@SuppressWarnings("serial")
+public class Rejected extends DBusExecutionException {
+
+    public Rejected(String _message) {
+        super(_message);
+    }
+
+}
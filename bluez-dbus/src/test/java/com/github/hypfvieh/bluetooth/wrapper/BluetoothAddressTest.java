@@ -0,0 +1,64 @@
+package com.github.hypfvieh.bluetooth.wrapper;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class BluetoothAddressTest {
+
+    private static final long VALUE = 0xAABBCCDDEEFFL;
+
+    @Test
+    void testParse() {
+        assertEquals(VALUE, BluetoothAddress.parse("AA:BB:CC:DD:EE:FF").toLong());
+        assertEquals(VALUE, BluetoothAddress.parse("aa:bb:cc:dd:ee:ff").toLong());
+        assertEquals(VALUE, BluetoothAddress.parse("AA_BB_CC_DD_EE_FF").toLong());
+        assertEquals(VALUE, BluetoothAddress.parse("AA-BB-CC-DD-EE-FF").toLong());
+        assertEquals(0, BluetoothAddress.parse("00:00:00:00:00:00").toLong());
+    }
+
+    @Test
+    void testParseInvalid() {
+        for (String invalid : new String[] {null, "", "AA:BB:CC:DD:EE", "AA:BB:CC:DD:EE:FF:00", "AA:BB:CC:DD:EE:FG",
+                "AA.BB.CC.DD.EE.FF", "AABBCCDDEEFF", " AA:BB:CC:DD:EE:F"}) {
+            assertThrows(IllegalArgumentException.class, () -> BluetoothAddress.parse(invalid), String.valueOf(invalid));
+        }
+        assertThrows(IllegalArgumentException.class, () -> BluetoothAddress.of(-1));
+        assertThrows(IllegalArgumentException.class, () -> BluetoothAddress.of(0x1000000000000L));
+    }
+
+    @Test
+    void testFromDbusPath() {
+        BluetoothAddress expected = BluetoothAddress.of(VALUE);
+        assertEquals(expected, BluetoothAddress.fromDbusPath("/org/bluez/hci0/dev_AA_BB_CC_DD_EE_FF"));
+        assertEquals(expected, BluetoothAddress.fromDbusPath("/org/bluez/hci0/dev_AA_BB_CC_DD_EE_FF/service000a"));
+        assertEquals(expected, BluetoothAddress.fromDbusPath("/org/bluez/hci0/dev_AA_BB_CC_DD_EE_FF/service000a/char000b/desc000d"));
+
+        assertNull(BluetoothAddress.fromDbusPath(null));
+        assertNull(BluetoothAddress.fromDbusPath("/org/bluez/hci0"));
+        assertNull(BluetoothAddress.fromDbusPath("/org/bluez/hci0/dev_AA_BB_CC"));
+        assertNull(BluetoothAddress.fromDbusPath("/org/bluez/hci0/dev_AA_BB_CC_DD_EE_FF0"));
+        assertNull(BluetoothAddress.fromDbusPath("/org/bluez/hci0/dev_AA_BB_CC_DD_EE_XX/service000a"));
+    }
+
+    @Test
+    void testToStringRoundTrip() {
+        BluetoothAddress address = BluetoothAddress.of(VALUE);
+        assertEquals("AA:BB:CC:DD:EE:FF", address.toString());
+        assertEquals("dev_AA_BB_CC_DD_EE_FF", address.toDbusPathElement());
+        assertEquals(address, BluetoothAddress.parse(address.toString()));
+        assertEquals(address, BluetoothAddress.fromDbusPath("/org/bluez/hci0/" + address.toDbusPathElement()));
+
+        assertEquals("01:02:03:04:05:06", BluetoothAddress.of(0x010203040506L).toString());
+    }
+
+    @Test
+    void testEqualsAndCompare() {
+        BluetoothAddress address = BluetoothAddress.parse("AA:BB:CC:DD:EE:FF");
+        assertEquals(address, BluetoothAddress.parse("aa_bb_cc_dd_ee_ff"));
+        assertEquals(address.hashCode(), BluetoothAddress.of(VALUE).hashCode());
+        assertNotEquals(address, BluetoothAddress.of(VALUE - 1));
+        assertTrue(BluetoothAddress.of(1).compareTo(address) < 0);
+        assertTrue(address.compareTo(BluetoothAddress.of(1)) > 0);
+    }
+}
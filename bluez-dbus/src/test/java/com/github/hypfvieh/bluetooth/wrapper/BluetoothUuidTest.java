@@ -0,0 +1,94 @@
+package com.github.hypfvieh.bluetooth.wrapper;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+class BluetoothUuidTest {
+
+    private static final String BATTERY_SERVICE = "0000180f-0000-1000-8000-00805f9b34fb";
+
+    @Test
+    void testParse16Bit() {
+        BluetoothUuid uuid = BluetoothUuid.parse("180f");
+        assertEquals(BATTERY_SERVICE, uuid.toString());
+        assertTrue(uuid.isShortUuid());
+        assertEquals(0x180f, uuid.toShortValue());
+        assertEquals(uuid, BluetoothUuid.parse("180F"));
+    }
+
+    @Test
+    void testParse32Bit() {
+        assertEquals(BluetoothUuid.parse("180f"), BluetoothUuid.parse("0000180f"));
+
+        BluetoothUuid uuid = BluetoothUuid.parse("12345678");
+        assertEquals("12345678-0000-1000-8000-00805f9b34fb", uuid.toString());
+        assertTrue(uuid.isShortUuid());
+        assertEquals(0x12345678L, uuid.toShortValue());
+    }
+
+    @Test
+    void testParse128Bit() {
+        assertEquals(BluetoothUuid.parse("180f"), BluetoothUuid.parse(BATTERY_SERVICE));
+        assertEquals(BluetoothUuid.parse("180f"), BluetoothUuid.parse(BATTERY_SERVICE.toUpperCase()));
+
+        BluetoothUuid uuid = BluetoothUuid.parse("6e400001-b5a3-f393-e0a9-e50e24dcca9e");
+        assertFalse(uuid.isShortUuid());
+        assertEquals(-1, uuid.toShortValue());
+        assertEquals(UUID.fromString("6e400001-b5a3-f393-e0a9-e50e24dcca9e"), uuid.toUuid());
+    }
+
+    @Test
+    void testParseHexPrefix() {
+        assertEquals(BluetoothUuid.parse("180f"), BluetoothUuid.parse("0x180f"));
+        assertEquals(BluetoothUuid.parse("2a37"), BluetoothUuid.parse("0X2A37"));
+        assertEquals(BluetoothUuid.parse("12345678"), BluetoothUuid.parse("0x12345678"));
+    }
+
+    @Test
+    void testInvalid() {
+        for (String invalid : new String[] {null, "", "0x", "18f", "180f0", "180g", "+180", "0x" + BATTERY_SERVICE,
+                "0000180f_0000-1000-8000-00805f9b34fb", "0000180f-0000-1000-8000-00805f9b34fg", BATTERY_SERVICE + "0"}) {
+            assertNull(BluetoothUuid.tryParse(invalid), String.valueOf(invalid));
+            assertThrows(IllegalArgumentException.class, () -> BluetoothUuid.parse(invalid), String.valueOf(invalid));
+        }
+        assertThrows(IllegalArgumentException.class, () -> BluetoothUuid.fromShort(-1));
+        assertThrows(IllegalArgumentException.class, () -> BluetoothUuid.fromShort(0x100000000L));
+    }
+
+    @Test
+    void testInterned() {
+        BluetoothUuid uuid = BluetoothUuid.parse("180f");
+        assertSame(uuid, BluetoothUuid.parse("0x180F"));
+        assertSame(uuid, BluetoothUuid.parse(BATTERY_SERVICE));
+        assertSame(uuid, BluetoothUuid.of(UUID.fromString(BATTERY_SERVICE)));
+        assertSame(uuid, BluetoothUuid.fromShort(0x180f));
+
+        // vendor assigned UUIDs are outside of the interned range
+        assertNotSame(BluetoothUuid.parse("fe59"), BluetoothUuid.parse("fe59"));
+        assertEquals(BluetoothUuid.parse("fe59"), BluetoothUuid.parse("fe59"));
+    }
+
+    @Test
+    void testToStringRoundTrip() {
+        for (int i = 0; i < 100; i++) {
+            UUID expected = UUID.randomUUID();
+            BluetoothUuid uuid = BluetoothUuid.of(expected);
+            assertEquals(expected.toString(), uuid.toString());
+            assertEquals(uuid, BluetoothUuid.parse(uuid.toString()));
+            assertEquals(uuid.hashCode(), BluetoothUuid.parse(uuid.toString()).hashCode());
+            assertEquals(expected, uuid.toUuid());
+        }
+    }
+
+    @Test
+    void testCompareUnsigned() {
+        BluetoothUuid low = BluetoothUuid.of(1, 0);
+        BluetoothUuid high = BluetoothUuid.of(0x8000000000000000L, 0);
+        assertTrue(low.compareTo(high) < 0);
+        assertTrue(high.compareTo(low) > 0);
+        assertEquals(0, low.compareTo(BluetoothUuid.of(1, 0)));
+    }
+}
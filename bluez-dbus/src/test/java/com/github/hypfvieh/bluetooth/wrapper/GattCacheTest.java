@@ -0,0 +1,113 @@
+package com.github.hypfvieh.bluetooth.wrapper;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+class GattCacheTest {
+
+    private static final BluetoothAddress ADDRESS = BluetoothAddress.parse("AA:BB:CC:DD:EE:FF");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testRoundTrip() throws IOException {
+        Path file = tempDir.resolve("gatt.cache");
+        byte[] original = createCacheFile();
+        Files.write(file, original);
+
+        GattCache cache = new GattCache(file);
+        cache.load();
+        assertTrue(cache.contains(ADDRESS));
+        assertEquals(List.of("read", "notify"), cache.getCharacteristicFlags(ADDRESS, "180d", "2a37"));
+        assertEquals(List.of("write"), cache.getCharacteristicFlags(ADDRESS, "0000180d-0000-1000-8000-00805f9b34fb", "0x2a39"));
+        assertNull(cache.getCharacteristicFlags(ADDRESS, "180f", "2a19"));
+
+        cache.save();
+        assertArrayEquals(original, Files.readAllBytes(file));
+
+        GattCache reloaded = new GattCache(file);
+        reloaded.load();
+        assertEquals(List.of("read", "notify"), reloaded.getCharacteristicFlags(ADDRESS, "180d", "2a37"));
+    }
+
+    @Test
+    void testMissingFile() throws IOException {
+        GattCache cache = new GattCache(tempDir.resolve("missing.cache"));
+        cache.load();
+        assertFalse(cache.contains(ADDRESS));
+    }
+
+    @Test
+    void testInvalidMagic() throws IOException {
+        Path file = tempDir.resolve("gatt.cache");
+        byte[] data = createCacheFile();
+        data[0] = 0;
+        Files.write(file, data);
+
+        assertThrows(IOException.class, () -> new GattCache(file).load());
+    }
+
+    @Test
+    void testTruncatedFileKeepsEntries() throws IOException {
+        Path file = tempDir.resolve("gatt.cache");
+        byte[] data = createCacheFile();
+        Files.write(file, data);
+
+        GattCache cache = new GattCache(file);
+        cache.load();
+
+        Files.write(file, Arrays.copyOf(data, data.length - 5));
+        assertThrows(IOException.class, cache::load);
+        assertTrue(cache.contains(ADDRESS));
+    }
+
+    /**
+     * Cache file with one device: heart rate service containing measurement (read, notify, one CCC descriptor)
+     * and control point (write).
+     */
+    private static byte[] createCacheFile() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(0x47415454);
+            out.writeByte(1);
+            out.writeInt(1);
+            out.writeLong(ADDRESS.toLong());
+
+            out.writeShort(1);
+            out.writeUTF("service0010");
+            writeUuid(out, "180d");
+            out.writeBoolean(true);
+
+            out.writeShort(2);
+            out.writeUTF("char0011");
+            writeUuid(out, "2a37");
+            out.writeInt(1 << 1 | 1 << 4);
+            out.writeShort(1);
+            out.writeUTF("desc0013");
+            writeUuid(out, "2902");
+
+            out.writeUTF("char0014");
+            writeUuid(out, "2a39");
+            out.writeInt(1 << 3);
+            out.writeShort(0);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeUuid(DataOutputStream _out, String _uuid) throws IOException {
+        BluetoothUuid uuid = BluetoothUuid.parse(_uuid);
+        _out.writeLong(uuid.getMostSignificantBits());
+        _out.writeLong(uuid.getLeastSignificantBits());
+    }
+}